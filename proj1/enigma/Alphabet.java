@@ -20,4 +20,22 @@ abstract class Alphabet {
      *  the alphabet. This is the inverse of toChar(). */
     abstract int toInt(char ch);
 
+    /** Returns a description of my characters in order, as the first and
+     *  last characters of each run of consecutive ones.  Two alphabets
+     *  have equal descriptions iff they have the same characters in the
+     *  same order. */
+    String runs() {
+        StringBuilder runs = new StringBuilder();
+        for (int i = 0; i < size(); i += 1) {
+            char ch = toChar(i);
+            int n = runs.length();
+            if (n > 0 && runs.charAt(n - 1) == ch - 1) {
+                runs.setCharAt(n - 1, ch);
+            } else {
+                runs.append(ch).append(ch);
+            }
+        }
+        return runs.toString();
+    }
+
 }
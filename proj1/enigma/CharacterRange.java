@@ -44,6 +44,11 @@ class CharacterRange extends Alphabet {
         return ch - _first;
     }
 
+    @Override
+    String runs() {
+        return new String(new char[] {_first, _last});
+    }
+
     /** Range of characters in this Alphabet. */
     private char _first, _last;
 
@@ -0,0 +1,233 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.EnigmaException.*;
+
+/** A reactive-streams stage that converts chunks of text with a Machine
+ *  as they arrive, for one downstream subscriber.  Each chunk received
+ *  becomes one converted chunk sent (without blanks, as
+ *  Machine.convert(char[], int, int) produces), so I pass downstream
+ *  demand upstream unchanged: I never request a chunk that my
+ *  subscriber has not asked for, and a slow subscriber throttles the
+ *  publisher instead of letting chunks pile up here.
+ *
+ *  Converted chunks are written into buffers drawn from a pool.  A
+ *  subscriber that is done with a chunk may hand it back with
+ *  recycle(), after which it must not touch it; one that never does
+ *  simply leaves the buffers to the garbage collector.  Chunks from
+ *  upstream are only read, never retained, so the publisher may reuse
+ *  them as soon as onNext returns.
+ *  @author Allison Wang
+ */
+class CipherProcessor
+    implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    /** A processor converting with M, which must already be set up and
+     *  is used by no one else while I run. */
+    CipherProcessor(Machine m) {
+        _machine = m;
+        _free = new ConcurrentLinkedQueue<>();
+        _pooled = new AtomicInteger();
+    }
+
+    /** Return BUFFER, a chunk I sent, to my pool for reuse. */
+    void recycle(CharBuffer buffer) {
+        if (buffer.hasArray() && _pooled.get() < POOL_LIMIT) {
+            buffer.clear();
+            _free.add(buffer);
+            _pooled.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            if (_downstream != null) {
+                subscriber.onSubscribe(CANCELLED);
+                subscriber.onError(new IllegalStateException(
+                    "CipherProcessor allows only one subscriber"));
+                return;
+            }
+            _downstream = subscriber;
+            upstream = _upstream;
+        }
+        subscriber.onSubscribe(new Demand());
+        if (upstream != null) {
+            forwardDemand();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (_upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+        }
+        forwardDemand();
+    }
+
+    @Override
+    public void onNext(CharBuffer chunk) {
+        Flow.Subscriber<? super CharBuffer> downstream = _downstream;
+        if (_done || downstream == null) {
+            return;
+        }
+        CharBuffer out = take(chunk.remaining());
+        char[] chars = out.array();
+        int start = out.arrayOffset();
+        int n = chunk.remaining();
+        chunk.get(chars, start, n);
+        try {
+            int end = _machine.convert(chars, start, start + n);
+            out.position(0).limit(end - start);
+        } catch (EnigmaException excp) {
+            cancelUpstream();
+            onError(excp);
+            return;
+        }
+        downstream.onNext(out);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Flow.Subscriber<? super CharBuffer> downstream;
+        synchronized (this) {
+            if (_done) {
+                return;
+            }
+            _done = true;
+            downstream = _downstream;
+        }
+        if (downstream != null) {
+            downstream.onError(throwable);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        Flow.Subscriber<? super CharBuffer> downstream;
+        synchronized (this) {
+            if (_done) {
+                return;
+            }
+            _done = true;
+            downstream = _downstream;
+        }
+        if (downstream != null) {
+            downstream.onComplete();
+        }
+    }
+
+    /** Return a buffer with room for at least N characters, from the pool
+     *  if it has one. */
+    private CharBuffer take(int n) {
+        for (CharBuffer buffer = _free.poll(); buffer != null;
+             buffer = _free.poll()) {
+            _pooled.decrementAndGet();
+            if (buffer.capacity() >= n) {
+                return buffer;
+            }
+        }
+        return CharBuffer.allocate(Math.max(n, MIN_CHUNK));
+    }
+
+    /** Pass demand accumulated from downstream to upstream, once both
+     *  are connected. */
+    private void forwardDemand() {
+        long n;
+        Flow.Subscription upstream;
+        synchronized (this) {
+            upstream = _upstream;
+            if (upstream == null || _downstream == null || _pending == 0) {
+                return;
+            }
+            n = _pending;
+            _pending = 0;
+        }
+        upstream.request(n);
+    }
+
+    /** Cancel my upstream subscription, if any. */
+    private void cancelUpstream() {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            upstream = _upstream;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    /** The subscription given to my subscriber. */
+    private class Demand implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelUpstream();
+                onError(new IllegalArgumentException(
+                    "non-positive request: " + n));
+                return;
+            }
+            synchronized (CipherProcessor.this) {
+                if (_done) {
+                    return;
+                }
+                _pending += n;
+                if (_pending < 0) {
+                    _pending = Long.MAX_VALUE;
+                }
+            }
+            forwardDemand();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (CipherProcessor.this) {
+                _done = true;
+            }
+            cancelUpstream();
+        }
+    }
+
+    /** A subscription that does nothing, for rejected subscribers. */
+    private static final Flow.Subscription CANCELLED =
+        new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    /** Smallest buffer allocated for a chunk. */
+    private static final int MIN_CHUNK = 1 << 10;
+    /** Most buffers kept for reuse. */
+    private static final int POOL_LIMIT = 64;
+
+    /** Machine that converts. */
+    private final Machine _machine;
+    /** Buffers available for reuse. */
+    private final ConcurrentLinkedQueue<CharBuffer> _free;
+    /** Number of buffers in _free. */
+    private final AtomicInteger _pooled;
+    /** Subscription to my publisher, or null. */
+    private Flow.Subscription _upstream;
+    /** My subscriber, or null. */
+    private volatile Flow.Subscriber<? super CharBuffer> _downstream;
+    /** Demand from downstream not yet passed upstream. */
+    private long _pending;
+    /** True once terminated or cancelled. */
+    private volatile boolean _done;
+
+}
@@ -0,0 +1,148 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.TestMachines.*;
+
+/** The suite of all JUnit tests for the CipherProcessor class.
+ *  @author Allison Wang
+ */
+public class CipherProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A subscriber that asks for one chunk at a time, collecting what it
+     *  receives and recycling each chunk. */
+    private static class Collector implements Flow.Subscriber<CharBuffer> {
+
+        /** A collector that returns chunks to PROCESSOR and requests at
+         *  most LIMIT chunks in all. */
+        Collector(CipherProcessor processor, long limit) {
+            _processor = processor;
+            _limit = limit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(1);
+            _requested += 1;
+        }
+
+        @Override
+        public void onNext(CharBuffer chunk) {
+            _text.append(chunk);
+            _received += 1;
+            _processor.recycle(chunk);
+            if (_requested < _limit) {
+                _requested += 1;
+                _subscription.request(1);
+            } else {
+                _stalled.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            _error = throwable;
+            _finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            _finished.countDown();
+        }
+
+        /** Source of buffers. */
+        private final CipherProcessor _processor;
+        /** Most chunks requested. */
+        private final long _limit;
+        /** Subscription. */
+        private Flow.Subscription _subscription;
+        /** Text received. */
+        private final StringBuilder _text = new StringBuilder();
+        /** Chunks requested and received. */
+        private volatile long _requested, _received;
+        /** Error received, or null. */
+        private volatile Throwable _error;
+        /** Counted down on completion or error. */
+        private final CountDownLatch _finished = new CountDownLatch(1);
+        /** Counted down on reaching the request limit. */
+        private final CountDownLatch _stalled = new CountDownLatch(1);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkStreamedMatchesWhole() throws InterruptedException {
+        String[] chunks = {"From his shoul", "der Hiawatha", " Took the ",
+                           "camera of rosewood"};
+        CipherProcessor processor = new CipherProcessor(axle());
+        Collector collector = new Collector(processor, Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<CharBuffer> publisher =
+             new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (String chunk : chunks) {
+                publisher.submit(CharBuffer.wrap(chunk));
+            }
+        }
+        assertTrue(collector._finished.await(5, TimeUnit.SECONDS));
+        assertNull(collector._error);
+        assertEquals(axle().convert(String.join("", chunks)),
+                     collector._text.toString());
+    }
+
+    @Test
+    public void checkDemandPassedUpstream() throws InterruptedException {
+        CipherProcessor processor = new CipherProcessor(axle());
+        Collector collector = new Collector(processor, 3);
+        AtomicLong upstreamDemand = new AtomicLong();
+        processor.subscribe(collector);
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                upstreamDemand.addAndGet(n);
+                for (long i = 0; i < n; i += 1) {
+                    processor.onNext(CharBuffer.wrap("HELLO"));
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        assertTrue(collector._stalled.await(5, TimeUnit.SECONDS));
+        assertEquals(3, upstreamDemand.get());
+        assertEquals(3, collector._received);
+    }
+
+    @Test
+    public void checkBadCharacterFails() throws InterruptedException {
+        CipherProcessor processor = new CipherProcessor(axle());
+        Collector collector = new Collector(processor, Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<CharBuffer> publisher =
+             new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            publisher.submit(CharBuffer.wrap("HELLO1"));
+        }
+        assertTrue(collector._finished.await(5, TimeUnit.SECONDS));
+        assertTrue(collector._error instanceof EnigmaException);
+    }
+
+}
@@ -0,0 +1,32 @@
+package enigma;
+
+/** The engine whose kernels KernelCompiler generates as hidden classes,
+ *  one per rotor order.
+ *  @author Allison Wang
+ */
+public final class CompiledEngine implements Engine {
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(int alphabetSize, int numRotors) {
+        return KernelCompiler.supports(alphabetSize);
+    }
+
+    @Override
+    public Kernel kernel(SlotTables slots, String wiring) {
+        return KernelCompiler.kernel(slots, wiring);
+    }
+
+    @Override
+    public Kernel cachedKernel(String wiring) {
+        return KernelCompiler.cached(wiring);
+    }
+
+    /** My name. */
+    static final String NAME = "compiled";
+
+}
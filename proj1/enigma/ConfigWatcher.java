@@ -0,0 +1,253 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static enigma.EnigmaException.*;
+
+/** Keeps a compiled configuration current with its file, for processes
+ *  that run long enough for the configuration to change under them.
+ *  The configuration is held as a template Machine whose rotor wirings
+ *  have all been compiled; it is never converted with directly, but
+ *  copied by newMachine() for each new session, so copies share its
+ *  compiled tables.  When the file changes, a background thread parses
+ *  and compiles it afresh and then swaps the new template in with one
+ *  atomic store.  Sessions already under way keep their old copies and
+ *  finish on the old wirings; only sessions started later see the new
+ *  ones.  A configuration that fails to parse is reported in stats()
+ *  and leaves the previous one in force.
+ *  @author Allison Wang
+ */
+class ConfigWatcher implements AutoCloseable {
+
+    /** A watcher for the configuration file NAME, which is loaded at
+     *  once.  Call start() to begin watching it. */
+    ConfigWatcher(String name) {
+        _file = Paths.get(name).toAbsolutePath();
+        _current = new AtomicReference<>(compile());
+        _stats = new Stats(1, 0, 0, 0, null);
+    }
+
+    /** Return a new machine with the current configuration, its own
+     *  rotors, and no rotors inserted. */
+    Machine newMachine() {
+        return _current.get().copy();
+    }
+
+    /** Return the number of configurations loaded so far, counting the
+     *  initial one. */
+    int generation() {
+        return stats().loads();
+    }
+
+    /** Return the current reload statistics. */
+    synchronized Stats stats() {
+        return _stats;
+    }
+
+    /** Wait up to MILLIS milliseconds for the number of loads plus
+     *  failures to exceed ATTEMPTS.  Returns true if it did. */
+    synchronized boolean awaitAttempts(int attempts, long millis)
+        throws InterruptedException {
+        long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (_stats.loads() + _stats.failures() <= attempts) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    /** Start watching my file on a background thread. */
+    synchronized void start() {
+        if (_watcher != null) {
+            return;
+        }
+        try {
+            _watcher = FileSystems.getDefault().newWatchService();
+            _file.getParent().register(_watcher,
+                                       StandardWatchEventKinds.ENTRY_CREATE,
+                                       StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException excp) {
+            throw error("could not watch %s", _file);
+        }
+        Thread thread = new Thread(this::watch, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop watching. */
+    @Override
+    public void close() {
+        WatchService watcher;
+        synchronized (this) {
+            watcher = _watcher;
+        }
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        }
+    }
+
+    /** Parse and compile my file now, and if that succeeds, make it the
+     *  configuration for new machines.  Returns true on success. */
+    boolean reload() {
+        long start = System.nanoTime();
+        try {
+            Machine config = compile();
+            _current.set(config);
+            record(start, null);
+            return true;
+        } catch (EnigmaException excp) {
+            record(start, excp.getMessage());
+            return false;
+        }
+    }
+
+    /** Return a template machine configured from my file, with all its
+     *  rotors' permutations compiled. */
+    private Machine compile() {
+        Machine config = Main.configure(_file.toString());
+        for (Rotor rotor : config.allRotors().rotors()) {
+            rotor.permutation().permute(0);
+        }
+        return config;
+    }
+
+    /** Record a reload begun at START that failed with message ERROR, or
+     *  succeeded if ERROR is null. */
+    private synchronized void record(long start, String error) {
+        long nanos = System.nanoTime() - start;
+        Stats old = _stats;
+        if (error == null) {
+            _stats = new Stats(old.loads() + 1, old.failures(), nanos,
+                               old.totalNanos() + nanos, old.lastError());
+        } else {
+            _stats = new Stats(old.loads(), old.failures() + 1, nanos,
+                               old.totalNanos() + nanos, error);
+        }
+        notifyAll();
+    }
+
+    /** Reload each time my file is created or modified, until the watch
+     *  service is closed.  Bursts of events, as from an editor saving
+     *  through a temporary file, cause one reload. */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = _watcher.take();
+                boolean changed = pollMine(key);
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey more = _watcher.poll(); more != null;
+                     more = _watcher.poll()) {
+                    changed |= pollMine(more);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException excp) {
+            return;
+        }
+    }
+
+    /** Return true if KEY's pending events include one for my file, and
+     *  reset KEY. */
+    private boolean pollMine(WatchKey key) {
+        boolean mine = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context == null || _file.getFileName().equals(context)) {
+                mine = true;
+            }
+        }
+        key.reset();
+        return mine;
+    }
+
+    /** Reload statistics, as of one moment. */
+    static final class Stats {
+
+        /** Statistics for LOADS successful loads and FAILURES failed
+         *  reloads, the last of which took LASTNANOS, and all of which
+         *  (after the first load) took TOTALNANOS, with LASTERROR the
+         *  message of the last failure, or null. */
+        Stats(int loads, int failures, long lastNanos, long totalNanos,
+              String lastError) {
+            _loads = loads;
+            _failures = failures;
+            _lastNanos = lastNanos;
+            _totalNanos = totalNanos;
+            _lastError = lastError;
+        }
+
+        /** Return the number of configurations loaded. */
+        int loads() {
+            return _loads;
+        }
+
+        /** Return the number of reloads that failed. */
+        int failures() {
+            return _failures;
+        }
+
+        /** Return the nanoseconds taken by the last reload. */
+        long lastNanos() {
+            return _lastNanos;
+        }
+
+        /** Return the nanoseconds taken by all reloads. */
+        long totalNanos() {
+            return _totalNanos;
+        }
+
+        /** Return the message of the last failed reload, or null. */
+        String lastError() {
+            return _lastError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("loads=%d failures=%d last=%.3fms "
+                                 + "total=%.3fms%s", _loads, _failures,
+                                 _lastNanos / 1e6, _totalNanos / 1e6,
+                                 _lastError == null ? ""
+                                 : " lastError=" + _lastError);
+        }
+
+        /** Successful loads and failed reloads. */
+        private final int _loads, _failures;
+        /** Time of the last reload and of all reloads. */
+        private final long _lastNanos, _totalNanos;
+        /** Message of the last failure, or null. */
+        private final String _lastError;
+    }
+
+    /** Milliseconds to let a burst of file events settle. */
+    private static final long SETTLE_MILLIS = 50;
+
+    /** The configuration file. */
+    private final Path _file;
+    /** The current template machine. */
+    private final AtomicReference<Machine> _current;
+    /** Current statistics. */
+    private Stats _stats;
+    /** Watch service, or null if not watching. */
+    private WatchService _watcher;
+
+}
@@ -0,0 +1,102 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigWatcher class.
+ *  @author Allison Wang
+ */
+public class ConfigWatcherTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Settings used to convert. */
+    private static final MachineSettings KEY = new MachineSettings(
+        new String[] {"B", "III", "I"}, "QC", "");
+
+    /** Write to FILE a configuration with reflector B and moving rotors
+     *  I, II and III, with rotor I wired as WIRING. */
+    private void writeConfig(File file, String wiring) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("A-Z");
+            out.println("3 2");
+            out.println("B R " + NAVALA.get("B"));
+            out.println("I MQ " + wiring);
+            out.println("II ME " + NAVALA.get("II"));
+            out.println("III MV " + NAVALA.get("III"));
+        }
+    }
+
+    /** Return a new machine from WATCHER set to KEY. */
+    private Machine session(ConfigWatcher watcher) {
+        Machine m = watcher.newMachine();
+        KEY.apply(m);
+        return m;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkReloadSwapsForNewSessions() throws IOException {
+        File file = File.createTempFile("watch", ".conf");
+        file.deleteOnExit();
+        writeConfig(file, NAVALA.get("I"));
+        ConfigWatcher watcher = new ConfigWatcher(file.getPath());
+        Machine before = session(watcher);
+        Machine inFlight = session(watcher);
+        String first = inFlight.convert("HELLOWORLD");
+
+        writeConfig(file, NAVALA.get("IV"));
+        assertTrue(watcher.reload());
+        assertEquals(2, watcher.generation());
+        assertEquals(before.convert("HELLOWORLDAGAIN").substring(10),
+                     inFlight.convert("AGAIN"));
+        assertFalse(first.equals(session(watcher).convert("HELLOWORLD")));
+    }
+
+    @Test
+    public void checkBadReloadKeepsOld() throws IOException {
+        File file = File.createTempFile("watch", ".conf");
+        file.deleteOnExit();
+        writeConfig(file, NAVALA.get("I"));
+        ConfigWatcher watcher = new ConfigWatcher(file.getPath());
+        String expected = session(watcher).convert("HELLOWORLD");
+
+        writeConfig(file, "(A1)");
+        assertFalse(watcher.reload());
+        ConfigWatcher.Stats stats = watcher.stats();
+        assertEquals(1, stats.loads());
+        assertEquals(1, stats.failures());
+        assertNotNull(stats.lastError());
+        assertEquals(expected, session(watcher).convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void checkWatchedFile() throws IOException, InterruptedException {
+        File file = File.createTempFile("watch", ".conf");
+        file.deleteOnExit();
+        writeConfig(file, NAVALA.get("I"));
+        try (ConfigWatcher watcher = new ConfigWatcher(file.getPath())) {
+            String old = session(watcher).convert("HELLOWORLD");
+            watcher.start();
+            writeConfig(file, NAVALA.get("IV"));
+            assertTrue(watcher.awaitAttempts(1, 10000));
+            assertEquals(2, watcher.generation());
+            assertTrue(watcher.stats().lastNanos() > 0);
+            assertFalse(old.equals(session(watcher).convert("HELLOWORLD")));
+        }
+    }
+
+}
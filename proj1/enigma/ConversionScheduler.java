@@ -0,0 +1,281 @@
+package enigma;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import static enigma.EnigmaException.*;
+
+/** Runs conversion jobs of two priorities on a fixed set of worker
+ *  threads sharing one configuration, so that short interactive jobs are
+ *  not held up behind bulk ones.  Each job is a session of a
+ *  SessionTable, whose record is the snapshot of its machine state
+ *  between slices.  An interactive job runs to completion as soon as a
+ *  worker is free.  A bulk job runs one slice at a time and then goes to
+ *  the back of the bulk queue, so that bulk jobs share the workers
+ *  evenly, and a worker picks up any waiting interactive job before its
+ *  next bulk slice.  An interactive job therefore waits at most about
+ *  one slice for a worker.  I size slices from the measured conversion
+ *  rate so that one slice takes about half the latency target: long
+ *  enough that switching costs are negligible for bulk throughput,
+ *  short enough that interactive jobs meet the target.
+ *  @author Allison Wang
+ */
+class ConversionScheduler implements AutoCloseable {
+
+    /** Priority classes of jobs. */
+    enum Priority {
+        /** Short jobs someone is waiting on. */
+        INTERACTIVE,
+        /** Long jobs, which may be sliced. */
+        BULK
+    }
+
+    /** A scheduler converting with THREADS workers, each with its own
+     *  copy of CONFIG, holding at most CAPACITY unfinished jobs, and
+     *  aiming to start interactive jobs within LATENCYMILLIS
+     *  milliseconds of their submission. */
+    ConversionScheduler(Machine config, int threads, int capacity,
+                        long latencyMillis) {
+        if (threads <= 0 || latencyMillis <= 0) {
+            throw error("scheduler needs positive threads and latency");
+        }
+        _sessions = new SessionTable(config, capacity);
+        _sliceNanos = latencyMillis * 1_000_000 / 2;
+        _sliceChars = MIN_SLICE;
+        int n = Priority.values().length;
+        _queues = new ArrayList<>(n);
+        _stats = new QueueStats[n];
+        for (int i = 0; i < n; i += 1) {
+            _queues.add(new ArrayDeque<>());
+            _stats[i] = new QueueStats();
+        }
+        _workers = new Thread[threads];
+        for (int i = 0; i < threads; i += 1) {
+            _workers[i] = new Thread(this::work, "enigma-scheduler-" + i);
+            _workers[i].setDaemon(true);
+            _workers[i].start();
+        }
+    }
+
+    /** Schedule the conversion of MSG, as by Machine.convert(String),
+     *  from SETTINGS, with priority PRIORITY.  Returns the eventual
+     *  result. */
+    CompletableFuture<String> submit(MachineSettings settings, String msg,
+                                     Priority priority) {
+        Job job = new Job(msg, priority);
+        synchronized (this) {
+            if (_closed) {
+                throw error("scheduler is closed");
+            }
+            job.session = _sessions.open(settings);
+            _queues.get(priority.ordinal()).add(job);
+            _stats[priority.ordinal()].depth += 1;
+            notify();
+        }
+        return job.result;
+    }
+
+    /** Return the number of unfinished jobs of priority PRIORITY. */
+    synchronized int queueDepth(Priority priority) {
+        return _stats[priority.ordinal()].depth;
+    }
+
+    /** Return the number of jobs of priority PRIORITY finished. */
+    synchronized long completed(Priority priority) {
+        return _stats[priority.ordinal()].completed;
+    }
+
+    /** Return the mean time in nanoseconds that jobs of priority
+     *  PRIORITY have waited for a worker before first running, or 0 if
+     *  none has run. */
+    synchronized long meanWaitNanos(Priority priority) {
+        QueueStats stats = _stats[priority.ordinal()];
+        return stats.started == 0 ? 0 : stats.totalWait / stats.started;
+    }
+
+    /** Return the longest time in nanoseconds that a job of priority
+     *  PRIORITY has waited for a worker before first running. */
+    synchronized long maxWaitNanos(Priority priority) {
+        return _stats[priority.ordinal()].maxWait;
+    }
+
+    /** Return the number of characters now given to a bulk slice. */
+    int sliceChars() {
+        return _sliceChars;
+    }
+
+    /** Stop accepting jobs, let the workers finish those already
+     *  submitted, and wait for them. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            _closed = true;
+            notifyAll();
+        }
+        for (Thread worker : _workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** Worker loop: run interactive jobs and bulk slices until closed and
+     *  out of work. */
+    private void work() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                job = next();
+                while (job == null) {
+                    if (_closed) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException excp) {
+                        return;
+                    }
+                    job = next();
+                }
+            }
+            String result = null;
+            RuntimeException error = null;
+            try {
+                result = run(job);
+            } catch (RuntimeException excp) {
+                error = excp;
+            }
+            boolean done = result != null || error != null;
+            synchronized (this) {
+                if (done) {
+                    _sessions.close(job.session);
+                    QueueStats stats = _stats[job.priority.ordinal()];
+                    stats.depth -= 1;
+                    stats.completed += 1;
+                } else {
+                    _queues.get(Priority.BULK.ordinal()).add(job);
+                    notify();
+                }
+            }
+            if (error != null) {
+                job.result.completeExceptionally(error);
+            } else if (result != null) {
+                job.result.complete(result);
+            }
+        }
+    }
+
+    /** Return the next job to run, removing it from its queue and
+     *  recording its wait if it has not run before, or null if there
+     *  is none. */
+    private Job next() {
+        for (int i = 0; i < _queues.size(); i += 1) {
+            Job job = _queues.get(i).poll();
+            if (job != null) {
+                if (job.next == 0) {
+                    long wait = System.nanoTime() - job.submitted;
+                    QueueStats stats = _stats[i];
+                    stats.started += 1;
+                    stats.totalWait += wait;
+                    stats.maxWait = Math.max(stats.maxWait, wait);
+                }
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /** Run JOB to completion if it is interactive, or for one slice if
+     *  bulk.  Returns its result if it is finished, and otherwise
+     *  null. */
+    private String run(Job job) {
+        char[] text = job.text;
+        int end = text.length;
+        if (job.priority == Priority.BULK) {
+            end = (int) Math.min(end, (long) job.next + _sliceChars);
+        }
+        long start = System.nanoTime();
+        int out = _sessions.convert(job.session, text, job.next, end);
+        if (job.priority == Priority.BULK) {
+            resize(end - job.next, System.nanoTime() - start);
+        }
+        System.arraycopy(text, job.next, text, job.out, out - job.next);
+        job.out += out - job.next;
+        job.next = end;
+        if (end < text.length) {
+            return null;
+        }
+        return new String(text, 0, job.out);
+    }
+
+    /** Adjust the slice length given that a slice of CHARS characters
+     *  took NANOS nanoseconds. */
+    private void resize(int chars, long nanos) {
+        if (chars < MIN_SLICE / 2 || nanos <= 0) {
+            return;
+        }
+        long ideal = chars * _sliceNanos / nanos;
+        long slice = (_sliceChars + ideal) / 2;
+        _sliceChars = (int) Math.max(MIN_SLICE, Math.min(MAX_SLICE, slice));
+    }
+
+    /** A conversion job. */
+    private static class Job {
+
+        /** A job converting MSG, with priority PRIORITY. */
+        Job(String msg, Priority priority) {
+            this.text = msg.toCharArray();
+            this.priority = priority;
+            this.submitted = System.nanoTime();
+            this.result = new CompletableFuture<>();
+        }
+
+        /** The message, converted in place as the job proceeds. */
+        private final char[] text;
+        /** The job's priority. */
+        private final Priority priority;
+        /** Value of System.nanoTime() when submitted. */
+        private final long submitted;
+        /** The eventual result. */
+        private final CompletableFuture<String> result;
+        /** The job's session. */
+        private int session;
+        /** Index in text of the next character to convert. */
+        private int next;
+        /** Length of the converted text at the start of text. */
+        private int out;
+    }
+
+    /** Statistics for one priority. */
+    private static class QueueStats {
+        /** Number of unfinished jobs. */
+        private int depth;
+        /** Number of jobs started and finished. */
+        private long started, completed;
+        /** Total and longest waits before starting, in nanoseconds. */
+        private long totalWait, maxWait;
+    }
+
+    /** Smallest and largest slice lengths, in characters. */
+    private static final int MIN_SLICE = 1 << 10, MAX_SLICE = 1 << 22;
+
+    /** Sessions of unfinished jobs. */
+    private final SessionTable _sessions;
+    /** Target duration of a slice. */
+    private final long _sliceNanos;
+    /** Current slice length, in characters. */
+    private volatile int _sliceChars;
+    /** Jobs waiting to run, by priority. */
+    private final ArrayList<ArrayDeque<Job>> _queues;
+    /** Statistics, by priority. */
+    private final QueueStats[] _stats;
+    /** Worker threads. */
+    private final Thread[] _workers;
+    /** True once closed. */
+    private boolean _closed;
+
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import static enigma.TestMachines.*;
+import static enigma.ConversionScheduler.Priority.*;
+
+/** The suite of all JUnit tests for the ConversionScheduler class.
+ *  @author Allison Wang
+ */
+public class ConversionSchedulerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the conversion of MSG from AXLE by a plain machine. */
+    private String expected(String msg) {
+        Machine m = naval();
+        AXLE.apply(m);
+        return m.convert(msg);
+    }
+
+    /** Return a message of N letters, with blanks. */
+    private String message(int n) {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            msg.append((char) ('A' + (i * 7) % 26));
+            if (i % 9 == 8) {
+                msg.append(' ');
+            }
+        }
+        return msg.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSlicedBulkMatches() throws Exception {
+        String bulk = message(200000);
+        try (ConversionScheduler scheduler =
+             new ConversionScheduler(naval(), 2, 16, 1)) {
+            CompletableFuture<String> big = scheduler.submit(AXLE, bulk, BULK);
+            CompletableFuture<String> small =
+                scheduler.submit(AXLE, "Hello World", INTERACTIVE);
+            assertEquals(expected(bulk), big.get());
+            assertEquals(expected("Hello World"), small.get());
+            assertEquals(0, scheduler.queueDepth(BULK));
+            assertEquals(1, scheduler.completed(INTERACTIVE));
+            assertEquals(1, scheduler.completed(BULK));
+        }
+    }
+
+    @Test
+    public void checkInteractiveOvertakesBulk() throws Exception {
+        String bulk = message(2000000);
+        try (ConversionScheduler scheduler =
+             new ConversionScheduler(naval(), 1, 16, 2)) {
+            CompletableFuture<String> big = scheduler.submit(AXLE, bulk, BULK);
+            Thread.sleep(20);
+            CompletableFuture<String> small =
+                scheduler.submit(AXLE, "HELLOWORLD", INTERACTIVE);
+            assertEquals(expected("HELLOWORLD"), small.get());
+            assertFalse(big.isDone());
+            assertEquals(1, scheduler.queueDepth(BULK));
+            assertTrue(scheduler.maxWaitNanos(INTERACTIVE) > 0);
+            assertEquals(expected(bulk), big.get());
+        }
+    }
+
+    @Test
+    public void checkErrorFailsOnlyItsJob() throws Exception {
+        try (ConversionScheduler scheduler =
+             new ConversionScheduler(naval(), 1, 16, 5)) {
+            CompletableFuture<String> bad =
+                scheduler.submit(AXLE, "HELLO1", INTERACTIVE);
+            CompletableFuture<String> good =
+                scheduler.submit(AXLE, "HELLO", INTERACTIVE);
+            assertEquals(expected("HELLO"), good.get());
+            assertTrue(bad.isCompletedExceptionally());
+            assertEquals(0, scheduler.queueDepth(INTERACTIVE));
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+import static enigma.EnigmaException.*;
+
+/** Finds the offsets in a ciphertext at which a crib (known plaintext)
+ *  could have been enciphered.  Since a reflecting machine never maps a
+ *  letter to itself, an offset is possible only if no letter of the crib
+ *  equals the ciphertext letter it would lie over.
+ *
+ *  The scan is a bit-parallel "shift-and": bit J of the state word is
+ *  set while the offset that puts crib letter J on the current
+ *  ciphertext letter has had no clash in crib letters 0 .. J.  Each
+ *  ciphertext letter then costs a shift, an OR and an AND per 64 crib
+ *  letters, however long the crib.  Offsets count alphabet letters
+ *  only: blanks, group separators and other characters outside the
+ *  alphabet are skipped, and lower-case letters are treated as upper
+ *  case.
+ *  @author Allison Wang
+ */
+public final class CribFinder {
+
+    /** Print the possible offsets of the crib ARGS[0] in the ciphertext
+     *  file ARGS[1], one per line, for the alphabet A-Z. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("usage: CribFinder CRIB FILE");
+            }
+            CribFinder finder =
+                new CribFinder(new CharacterRange('A', 'Z'), args[0]);
+            OffsetWriter writer = new OffsetWriter(System.out);
+            finder.scan(Paths.get(args[1]), writer);
+            writer.flush();
+            System.out.flush();
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A finder for CRIB, whose letters must be in ALPHABET.  Blanks in
+     *  CRIB are ignored. */
+    CribFinder(Alphabet alphabet, String crib) {
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < crib.length(); i += 1) {
+            char ch = Character.toUpperCase(crib.charAt(i));
+            if (!Character.isWhitespace(ch)) {
+                if (!alphabet.contains(ch)) {
+                    throw error("crib character %c not in alphabet", ch);
+                }
+                letters.append(ch);
+            }
+        }
+        _length = letters.length();
+        if (_length == 0) {
+            throw error("empty crib");
+        }
+        _words = (_length + 63) / 64;
+        _symbols = new int[BYTES];
+        for (int b = 0; b < BYTES; b += 1) {
+            char ch = Character.toUpperCase((char) b);
+            _symbols[b] = alphabet.contains(ch) ? alphabet.toInt(ch) : SKIP;
+        }
+        _clashes = new long[alphabet.size()][_words];
+        for (int j = 0; j < _length; j += 1) {
+            int c = alphabet.toInt(letters.charAt(j));
+            _clashes[c][j >>> 6] |= 1L << (j & 63);
+        }
+        _keep = new long[BYTES];
+        for (int b = 0; b < BYTES; b += 1) {
+            _keep[b] = _symbols[b] == SKIP ? -1L
+                : ~_clashes[_symbols[b]][0] & Long.MAX_VALUE;
+        }
+        _lastWord = (_length - 1) >>> 6;
+        _lastBit = 1L << ((_length - 1) & 63);
+    }
+
+    /** Return the number of letters in my crib. */
+    int length() {
+        return _length;
+    }
+
+    /** Report to OFFSETS, in increasing order, every letter offset in
+     *  TEXT at which my crib could lie. */
+    void scan(CharSequence text, LongConsumer offsets) {
+        Scan scan = new Scan(offsets);
+        for (int i = 0; i < text.length(); i += 1) {
+            char ch = text.charAt(i);
+            scan.accept(ch < BYTES ? _symbols[ch] : SKIP);
+        }
+    }
+
+    /** Report to OFFSETS, in increasing order, every letter offset in the
+     *  file FILE, read as single-byte characters through memory mapping,
+     *  at which my crib could lie. */
+    void scan(Path file, LongConsumer offsets) {
+        Scan scan = new Scan(offsets);
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += WINDOW) {
+                long len = Math.min(WINDOW, size - pos);
+                MappedByteBuffer window =
+                    channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                scan.scan(window, (int) len);
+            }
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        }
+    }
+
+    /** The state of one scan. */
+    private class Scan {
+
+        /** A scan reporting to OFFSETS. */
+        Scan(LongConsumer offsets) {
+            _offsets = offsets;
+            _state = new long[_words];
+        }
+
+        /** Scan the first LEN bytes of BUFFER, copying them a chunk at a
+         *  time into an array, which the JIT compiles to tighter loops
+         *  than it does direct buffer accesses. */
+        void scan(MappedByteBuffer buffer, int len) {
+            for (int pos = 0; pos < len; pos += CHUNK) {
+                int n = Math.min(CHUNK, len - pos);
+                buffer.get(pos, _chunk, 0, n);
+                if (_length < Long.SIZE) {
+                    scanShort(_chunk, n);
+                } else {
+                    for (int i = 0; i < n; i += 1) {
+                        accept(_symbols[_chunk[i] & 0xff]);
+                    }
+                }
+            }
+        }
+
+        /** Scan the first LEN bytes of CHUNK, for cribs of at most 63
+         *  letters, keeping the state in a local.  Candidate offsets are
+         *  written to a buffer without branching (the slot is simply
+         *  overwritten when the offset fails) and reported afterwards. */
+        private void scanShort(byte[] chunk, int len) {
+            long state = _state[0];
+            long letter = _letter;
+            long[] keep = _keep;
+            long[] found = _found;
+            int lastPos = _length - 1;
+            int n = 0;
+            for (int i = 0; i < len; i += 1) {
+                long k = keep[chunk[i] & 0xff];
+                if (k >= 0) {
+                    state = ((state << 1) | 1L) & k;
+                    found[n] = letter - lastPos;
+                    n += (int) (state >>> lastPos) & 1;
+                    letter += 1;
+                }
+            }
+            _state[0] = state;
+            _letter = letter;
+            for (int i = 0; i < n; i += 1) {
+                _offsets.accept(found[i]);
+            }
+        }
+
+        /** Process one character whose symbol index is C, or SKIP. */
+        void accept(int c) {
+            if (c == SKIP) {
+                return;
+            }
+            long[] clash = _clashes[c];
+            long carry = 1L;
+            for (int w = 0; w < _words; w += 1) {
+                long s = _state[w];
+                _state[w] = ((s << 1) | carry) & ~clash[w];
+                carry = s >>> 63;
+            }
+            if ((_state[_lastWord] & _lastBit) != 0) {
+                _offsets.accept(_letter - _length + 1);
+            }
+            _letter += 1;
+        }
+
+        /** Destination of offsets. */
+        private final LongConsumer _offsets;
+        /** Bit J of the whole array: offset _letter - J is still
+         *  possible. */
+        private final long[] _state;
+        /** Number of letters seen. */
+        private long _letter;
+        /** Bytes being scanned. */
+        private final byte[] _chunk = new byte[CHUNK];
+        /** Offsets found in the current chunk. */
+        private final long[] _found = new long[CHUNK];
+    }
+
+    /** Prints offsets one per line without allocating per offset. */
+    static class OffsetWriter implements LongConsumer {
+
+        /** A writer printing to OUT. */
+        OffsetWriter(OutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void accept(long offset) {
+            if (_used > _buffer.length - 21) {
+                flush();
+            }
+            long v = offset;
+            int start = _used;
+            do {
+                _buffer[_used] = (byte) ('0' + v % 10);
+                _used += 1;
+                v /= 10;
+            } while (v != 0);
+            for (int i = start, j = _used - 1; i < j; i += 1, j -= 1) {
+                byte t = _buffer[i];
+                _buffer[i] = _buffer[j];
+                _buffer[j] = t;
+            }
+            _buffer[_used] = '\n';
+            _used += 1;
+        }
+
+        /** Write out buffered offsets. */
+        void flush() {
+            try {
+                _out.write(_buffer, 0, _used);
+            } catch (IOException excp) {
+                throw error("could not write offsets");
+            }
+            _used = 0;
+        }
+
+        /** Destination. */
+        private final OutputStream _out;
+        /** Pending output. */
+        private final byte[] _buffer = new byte[1 << 16];
+        /** Bytes of _buffer in use. */
+        private int _used;
+    }
+
+    /** Number of single-byte character values. */
+    private static final int BYTES = 256;
+    /** Symbol index of characters that are skipped. */
+    private static final int SKIP = -1;
+    /** Bytes mapped at a time. */
+    private static final long WINDOW = 1L << 30;
+    /** Bytes copied out of a mapped window at a time. */
+    private static final int CHUNK = 1 << 16;
+
+    /** Number of crib letters, and of 64-bit words per mask. */
+    private final int _length, _words;
+    /** Symbol index of each byte value, or SKIP. */
+    private final int[] _symbols;
+    /** For each symbol, the crib positions holding that symbol. */
+    private final long[][] _clashes;
+    /** For each byte value, the complement of the first word of the
+     *  clashes of its symbol with the sign bit cleared, or -1 if it is
+     *  skipped.  Used for cribs of fewer than 64 letters. */
+    private final long[] _keep;
+    /** Index of the word holding the last crib position. */
+    private final int _lastWord;
+    /** Mask of the last crib position within its word. */
+    private final long _lastBit;
+
+}
@@ -0,0 +1,93 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CribFinder class.
+ *  @author Allison Wang
+ */
+public class CribFinderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the offsets of CRIB in TEXT (both upper case, without
+     *  blanks) at which no letter coincides, by brute force. */
+    private List<Long> expected(String crib, String text) {
+        ArrayList<Long> result = new ArrayList<>();
+        for (int i = 0; i + crib.length() <= text.length(); i += 1) {
+            boolean ok = true;
+            for (int j = 0; j < crib.length() && ok; j += 1) {
+                ok = crib.charAt(j) != text.charAt(i + j);
+            }
+            if (ok) {
+                result.add((long) i);
+            }
+        }
+        return result;
+    }
+
+    /** Return N random letters from A-D. */
+    private String randomLetters(Random random, int n) {
+        char[] chars = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            chars[i] = (char) ('A' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSimple() {
+        CribFinder finder = new CribFinder(UPPER, "ab");
+        ArrayList<Long> found = new ArrayList<>();
+        finder.scan("AB CCB a", found::add);
+        assertEquals(expected("AB", "ABCCBA"), found);
+    }
+
+    @Test
+    public void checkAgainstBruteForce() {
+        Random random = new Random(61);
+        for (int length : new int[] {1, 3, 62, 63, 64, 65, 130}) {
+            String crib = randomLetters(random, length);
+            String text = randomLetters(random, 5000)
+                + "EEEEEEEEEE" + randomLetters(random, 500);
+            ArrayList<Long> found = new ArrayList<>();
+            new CribFinder(UPPER, crib).scan(text, found::add);
+            assertEquals(expected(crib, text), found);
+        }
+    }
+
+    @Test
+    public void checkMappedFile() throws IOException {
+        Random random = new Random(62);
+        String crib = "ABCDABCD";
+        String text = randomLetters(random, 20000);
+        File file = File.createTempFile("crib", ".txt");
+        file.deleteOnExit();
+        try (FileWriter out = new FileWriter(file)) {
+            for (int i = 0; i < text.length(); i += 5) {
+                out.write(text, i, 5);
+                out.write(i % 50 == 45 ? "\n" : " ");
+            }
+        }
+        ArrayList<Long> found = new ArrayList<>();
+        new CribFinder(UPPER, crib).scan(file.toPath(), found::add);
+        assertEquals(expected(crib, text), found);
+    }
+}
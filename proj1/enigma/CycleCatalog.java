@@ -0,0 +1,343 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog of the "characteristics" of all rotor orders and starting
+ *  positions of a configuration, after Rejewski.  When each message key
+ *  is enciphered twice at the start of a message (the indicator), the
+ *  day's permutations A1 .. A6 at the first six positions determine the
+ *  products A4 A1, A5 A2 and A6 A3, which a day's worth of indicators
+ *  reveals.  The plugboard only conjugates these products, so the
+ *  lengths of their cycles depend on the rotors alone.
+ *
+ *  build() computes that signature for every setting of a KeySpace
+ *  without plugboard and writes a file of (signature hash, setting
+ *  number) records sorted by hash, as unsigned; a CycleCatalog maps the
+ *  file and finds the settings with a given signature by binary
+ *  search.  The
+ *  hash is 64 bits, so a lookup may, very rarely, return a setting
+ *  whose signature only collides with the one sought; callers should
+ *  try each setting returned.
+ *  @author Allison Wang
+ */
+public final class CycleCatalog {
+
+    /** With ARGS = build CONFIG INDEX, write the catalog of configuration
+     *  CONFIG to file INDEX.  With ARGS = find CONFIG INDEX INDICATORS,
+     *  print the settings (without plugboard) in the catalog INDEX of
+     *  CONFIG that match the six-letter indicators in file INDICATORS. */
+    public static void main(String... args) {
+        try {
+            if (args.length == 3 && args[0].equals("build")) {
+                Machine m = Main.configure(args[1]);
+                build(m, Paths.get(args[2]));
+            } else if (args.length == 4 && args[0].equals("find")) {
+                Machine m = Main.configure(args[1]);
+                CycleCatalog catalog = new CycleCatalog(
+                    new KeySpace(m, null), Paths.get(args[2]));
+                List<String> indicators = new ArrayList<>();
+                Tokenizer words;
+                try {
+                    words = new Tokenizer(new String(
+                        Files.readAllBytes(Paths.get(args[3]))));
+                } catch (IOException excp) {
+                    throw error("could not open %s", args[3]);
+                }
+                while (words.hasNext()) {
+                    indicators.add(words.next());
+                }
+                long signature = signature(m.alphabet(), indicators);
+                for (MachineSettings settings : catalog.find(signature)) {
+                    System.out.println(settings);
+                }
+            } else {
+                throw error("usage: CycleCatalog build CONFIG INDEX | "
+                            + "find CONFIG INDEX INDICATORS");
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Write to FILE the catalog of all rotor orders and positions of M's
+     *  configuration, as numbered by a KeySpace of M without
+     *  plugboards. */
+    static void build(Machine m, Path file) {
+        KeySpace space = new KeySpace(m, null);
+        if (space.size() > MAX_RECORDS) {
+            throw error("key space of %d settings is too large to catalog",
+                        space.size());
+        }
+        int n = (int) space.size();
+        long[] hashes = new long[n];
+        long[] indices = new long[n];
+        Characteristic chars = new Characteristic(m);
+        for (int order = 0; order < space.orders(); order += 1) {
+            m.insertRotors(space.order(order));
+            for (long pos = 0; pos < space.positions(); pos += 1) {
+                int i = (int) (order * space.positions() + pos);
+                hashes[i] = chars.signature(space.position(pos));
+                indices[i] = i;
+            }
+        }
+        sort(hashes, indices);
+
+        long size = HEADER + (long) n * RECORD;
+        try (FileChannel channel = FileChannel.open(
+                 file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out =
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC);
+            out.putInt(m.numRotors());
+            out.putLong(n);
+            for (int i = 0; i < n; i += 1) {
+                out.putLong(hashes[i]);
+                out.putLong(indices[i]);
+            }
+            out.force();
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+    }
+
+    /** The catalog in FILE, which must have been built for the settings
+     *  numbered by SPACE. */
+    CycleCatalog(KeySpace space, Path file) {
+        _space = space;
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.READ)) {
+            _records = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   channel.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", file);
+        }
+        if (_records.capacity() < HEADER || _records.getInt(0) != MAGIC) {
+            throw error("%s is not a cycle catalog", file);
+        }
+        _count = _records.getLong(COUNT);
+        if (_count != space.size()
+            || _records.capacity() != HEADER + _count * RECORD) {
+            throw error("%s was built for another configuration", file);
+        }
+    }
+
+    /** Return the number of settings catalogued. */
+    long size() {
+        return _count;
+    }
+
+    /** Return the settings whose signature hashes to SIGNATURE, in
+     *  increasing order of setting number. */
+    List<MachineSettings> find(long signature) {
+        long lo = 0, hi = _count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(hash(mid), signature) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<MachineSettings> result = new ArrayList<>();
+        for (long i = lo; i < _count && hash(i) == signature; i += 1) {
+            result.add(_space.get(
+                _records.getLong((int) (HEADER + i * RECORD + 8))));
+        }
+        return result;
+    }
+
+    /** Return the signature hash of record I. */
+    private long hash(long i) {
+        return _records.getLong((int) (HEADER + i * RECORD));
+    }
+
+    /** Return the signature of the products revealed by INDICATORS, each
+     *  a message key of three letters of ALPHABET enciphered twice.
+     *  There must be enough of them to determine all three products. */
+    static long signature(Alphabet alphabet, List<String> indicators) {
+        int size = alphabet.size();
+        int[][] products = new int[3][size];
+        for (int[] p : products) {
+            Arrays.fill(p, -1);
+        }
+        for (String indicator : indicators) {
+            if (indicator.length() != 6) {
+                throw error("indicator %s is not six letters", indicator);
+            }
+            for (int k = 0; k < 3; k += 1) {
+                int from = toInt(alphabet, indicator.charAt(k));
+                int to = toInt(alphabet, indicator.charAt(k + 3));
+                if (products[k][from] >= 0 && products[k][from] != to) {
+                    throw error("indicators are inconsistent");
+                }
+                products[k][from] = to;
+            }
+        }
+        for (int[] p : products) {
+            for (int x : p) {
+                if (x < 0) {
+                    throw error("too few indicators to determine the "
+                                + "characteristic");
+                }
+            }
+        }
+        return hash(products);
+    }
+
+    /** Return the index of CH, in upper case, in ALPHABET. */
+    private static int toInt(Alphabet alphabet, char ch) {
+        char c = Character.toUpperCase(ch);
+        if (!alphabet.contains(c)) {
+            throw error("character %c not in alphabet", c);
+        }
+        return alphabet.toInt(c);
+    }
+
+    /** Return the hash of the cycle lengths of the permutations
+     *  PRODUCTS, each given as a table of images. */
+    static long hash(int[][] products) {
+        long h = SEED;
+        for (int[] p : products) {
+            int[] counts = new int[p.length + 1];
+            boolean[] seen = new boolean[p.length];
+            for (int start = 0; start < p.length; start += 1) {
+                if (!seen[start]) {
+                    int len = 0;
+                    for (int x = start; !seen[x]; x = p[x]) {
+                        seen[x] = true;
+                        len += 1;
+                    }
+                    counts[len] += 1;
+                }
+            }
+            for (int len = 1; len < counts.length; len += 1) {
+                h = mix(h + counts[len]);
+            }
+        }
+        return h;
+    }
+
+    /** Return a thorough scrambling of X. */
+    private static long mix(long x) {
+        long z = x * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Sort KEYS into increasing unsigned order, applying the same
+     *  rearrangement to VALUES, with a stable radix sort on 16-bit
+     *  digits.  The even number of passes leaves the result in KEYS and
+     *  VALUES themselves. */
+    private static void sort(long[] keys, long[] values) {
+        int n = keys.length;
+        long[] k2 = new long[n], v2 = new long[n];
+        int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < Long.SIZE; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (long key : keys) {
+                counts[(int) (key >>> shift) & 0xffff] += 1;
+            }
+            int total = 0;
+            for (int d = 0; d < counts.length; d += 1) {
+                int c = counts[d];
+                counts[d] = total;
+                total += c;
+            }
+            for (int i = 0; i < n; i += 1) {
+                int d = (int) (keys[i] >>> shift) & 0xffff;
+                k2[counts[d]] = keys[i];
+                v2[counts[d]] = values[i];
+                counts[d] += 1;
+            }
+            long[] t = keys;
+            keys = k2;
+            k2 = t;
+            t = values;
+            values = v2;
+            v2 = t;
+        }
+    }
+
+    /** Computes the signatures of the settings of a machine. */
+    static class Characteristic {
+
+        /** Computes signatures using M, whose rotors are inserted by the
+         *  caller and whose plugboard is removed. */
+        Characteristic(Machine m) {
+            _machine = m;
+            _alphabet = m.alphabet();
+            int size = _alphabet.size();
+            _core = new int[STEPS * size];
+            _products = new int[STEPS / 2][size];
+            _positions = new int[m.numRotors() - 1];
+            m.setPlugboard(null);
+        }
+
+        /** Return the signature of the rotors now inserted in my machine,
+         *  starting at POSITION (numRotors() - 1 letters). */
+        long signature(String position) {
+            for (int i = 0; i < _positions.length; i += 1) {
+                _positions[i] = _alphabet.toInt(position.charAt(i));
+            }
+            int size = _alphabet.size();
+            _machine.setPositions(_positions);
+            _machine.rotorCore(STEPS, null, _core);
+            for (int k = 0; k < _products.length; k += 1) {
+                int first = k * size, second = (k + 3) * size;
+                for (int x = 0; x < size; x += 1) {
+                    _products[k][x] = _core[second + _core[first + x]];
+                }
+            }
+            return hash(_products);
+        }
+
+        /** Machine used. */
+        private final Machine _machine;
+        /** Its alphabet. */
+        private final Alphabet _alphabet;
+        /** Image of each letter at each of the first STEPS positions,
+         *  as filled by Machine.rotorCore. */
+        private final int[] _core;
+        /** The products A4 A1, A5 A2, A6 A3. */
+        private final int[][] _products;
+        /** Starting positions being tried. */
+        private final int[] _positions;
+    }
+
+    /** Number of positions spanned by an indicator. */
+    private static final int STEPS = 6;
+    /** First word of a catalog file. */
+    private static final int MAGIC = 0x45435943;
+    /** Offset of the record count in the header, and header size. */
+    private static final int COUNT = 8, HEADER = 16;
+    /** Bytes per record: signature hash and setting number. */
+    private static final int RECORD = 16;
+    /** Most records a catalog may hold, so that it fits one mapping. */
+    private static final long MAX_RECORDS =
+        (Integer.MAX_VALUE - HEADER) / RECORD;
+    /** Initial value of signature hashes. */
+    private static final long SEED = 0x243F6A8885A308D3L;
+
+    /** The settings catalogued. */
+    private final KeySpace _space;
+    /** The mapped catalog file. */
+    private final MappedByteBuffer _records;
+    /** Number of records. */
+    private final long _count;
+
+}
@@ -0,0 +1,112 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CycleCatalog class.
+ *  @author Allison Wang
+ */
+public class CycleCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with reflector B and moving rotors I, II and III
+     *  in three slots. */
+    private Machine smallMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        String[] moving = {"I", "II", "III"};
+        String[] notches = {"Q", "E", "V"};
+        for (int i = 0; i < moving.length; i += 1) {
+            rotors.add(new MovingRotor(moving[i],
+                    new Permutation(NAVALA.get(moving[i]), UPPER),
+                    notches[i]));
+        }
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /** Return COUNT random message keys enciphered twice with day key
+     *  DAY, each starting from DAY's positions. */
+    private List<String> indicators(Machine m, MachineSettings day,
+                                    int count) {
+        Random random = new Random(7);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            char[] key = new char[3];
+            for (int k = 0; k < 3; k += 1) {
+                key[k] = (char) ('A' + random.nextInt(26));
+            }
+            day.apply(m);
+            String k3 = new String(key);
+            result.add(m.convert(k3 + k3));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkFindDayKey() throws IOException {
+        File file = File.createTempFile("catalog", ".idx");
+        file.deleteOnExit();
+        Machine m = smallMachine();
+        CycleCatalog.build(m, file.toPath());
+        CycleCatalog catalog =
+            new CycleCatalog(new KeySpace(m, null), file.toPath());
+        assertEquals(6 * 26 * 26, catalog.size());
+
+        MachineSettings day = new MachineSettings(
+            new String[] {"B", "III", "I"}, "QC", "(AT) (BL) (EZ) (MX)");
+        long signature =
+            CycleCatalog.signature(UPPER, indicators(m, day, 400));
+        boolean found = false;
+        for (MachineSettings s : catalog.find(signature)) {
+            found |= s.toString().equals("* B III I QC");
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void checkEveryRecordFindable() throws IOException {
+        File file = File.createTempFile("catalog", ".idx");
+        file.deleteOnExit();
+        Machine m = smallMachine();
+        CycleCatalog.build(m, file.toPath());
+        KeySpace space = new KeySpace(m, null);
+        CycleCatalog catalog = new CycleCatalog(space, file.toPath());
+        CycleCatalog.Characteristic chars = new CycleCatalog.Characteristic(m);
+        for (long i = 0; i < space.size(); i += 97) {
+            MachineSettings s = space.get(i);
+            m.insertRotors(s.rotors());
+            List<String> found = new ArrayList<>();
+            for (MachineSettings t
+                     : catalog.find(chars.signature(s.positions()))) {
+                found.add(t.toString());
+            }
+            assertTrue(found.contains(s.toString()));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooFewIndicators() {
+        List<String> few = new ArrayList<>();
+        few.add("ABCDEF");
+        CycleCatalog.signature(UPPER, few);
+    }
+
+}
@@ -0,0 +1,33 @@
+package enigma;
+
+/** A way of performing the rotor conversions of a Machine.  Engines
+ *  are found with java.util.ServiceLoader (see Engines), so that new
+ *  ones can be added by listing them in
+ *  META-INF/services/enigma.Engine on the class path, and a machine
+ *  uses the one it is given, or by default the one Engines.preferred()
+ *  names.  An engine that supplies no kernel leaves the machine to
+ *  convert with its rotors and stepper directly.
+ *  @author Allison Wang
+ */
+public interface Engine {
+
+    /** Return my name, as given to --engine. */
+    String name();
+
+    /** Return true iff I can convert for machines whose alphabet has
+     *  ALPHABETSIZE characters and which have NUMROTORS slots. */
+    boolean supports(int alphabetSize, int numRotors);
+
+    /** Return a kernel for the rotors in SLOTS, which are described by
+     *  WIRING (Machine.wiring()), or null if the machine should convert
+     *  without one. */
+    Kernel kernel(SlotTables slots, String wiring);
+
+    /** Return the kernel I have already made for rotors described by
+     *  WIRING, or null if I have none at hand.  Unlike kernel(), this
+     *  must be cheap: a machine asks every time rotors are inserted. */
+    default Kernel cachedKernel(String wiring) {
+        return null;
+    }
+
+}
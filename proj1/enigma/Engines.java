@@ -0,0 +1,184 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import static enigma.EnigmaException.*;
+
+/** The engines available to machines, and the choice among them.
+ *  Engines are those listed for the service enigma.Engine on the class
+ *  path, found with ServiceLoader, together with the built-in generic,
+ *  table and compiled engines should the class path not list them (as
+ *  when the classes are run from a directory without META-INF).  A
+ *  machine uses the engine named by the system property enigma.engine,
+ *  or else the compiled engine, unless given another.  Since which
+ *  engine is fastest depends on the configuration and the host,
+ *  calibrate() can instead time each engine that supports a
+ *  configuration on a short run of random text and pick the fastest.
+ *  @author Allison Wang
+ */
+final class Engines {
+
+    /** Return all available engines, each name once, in the order in
+     *  which they were found. */
+    static synchronized List<Engine> all() {
+        if (_all == null) {
+            ArrayList<Engine> all = new ArrayList<>();
+            Iterator<Engine> found =
+                ServiceLoader.load(Engine.class).iterator();
+            while (true) {
+                try {
+                    if (!found.hasNext()) {
+                        break;
+                    }
+                    add(all, found.next());
+                } catch (ServiceConfigurationError excp) {
+                    continue;
+                }
+            }
+            add(all, new GenericEngine());
+            add(all, new TableEngine());
+            add(all, new CompiledEngine());
+            _all = Collections.unmodifiableList(all);
+        }
+        return _all;
+    }
+
+    /** Return the engine named NAME. */
+    static Engine named(String name) {
+        for (Engine engine : all()) {
+            if (engine.name().equals(name)) {
+                return engine;
+            }
+        }
+        ArrayList<String> names = new ArrayList<>();
+        for (Engine engine : all()) {
+            names.add(engine.name());
+        }
+        throw error("unknown engine: %s (available: %s, %s)", name,
+                    String.join(", ", names), AUTO);
+    }
+
+    /** Return the engine machines use unless given another: the one
+     *  named by the system property enigma.engine, if that is set and
+     *  is not AUTO, and otherwise the compiled engine. */
+    static Engine preferred() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null || name.equals(AUTO)) {
+            return DEFAULT;
+        }
+        return named(name);
+    }
+
+    /** Return the fastest of the engines that support CONFIG, timing
+     *  each for about MILLIS milliseconds (half of it to warm up) on
+     *  random text with the first rotor order CONFIG allows.  An
+     *  engine whose output differs from the generic engine's is passed
+     *  over.  Reports each engine's rate on LOG, unless it is null.
+     *  Returns preferred() if CONFIG has no valid rotor order. */
+    static Engine calibrate(Machine config, long millis, PrintStream log) {
+        String[] order;
+        try {
+            KeySpace keys = new KeySpace(config, null);
+            if (keys.orders() == 0) {
+                return preferred();
+            }
+            order = keys.order(0);
+        } catch (EnigmaException excp) {
+            return preferred();
+        }
+        Alphabet alpha = config.alphabet();
+        char[] text = new char[CALIBRATION_CHARS];
+        Random random = new Random(0);
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        char[] expected = text.clone();
+        machine(config, new GenericEngine(), order)
+            .convert(expected, 0, expected.length);
+
+        long nanos = millis * 1_000_000 / 2;
+        Engine best = null;
+        double bestRate = 0;
+        for (Engine engine : all()) {
+            if (!engine.supports(alpha.size(), config.numRotors())) {
+                continue;
+            }
+            Machine m = machine(config, engine, order);
+            char[] chars = text.clone();
+            m.convert(chars, 0, chars.length);
+            if (!Arrays.equals(chars, expected)) {
+                if (log != null) {
+                    log.printf("engine %s: wrong output, skipped%n",
+                               engine.name());
+                }
+                continue;
+            }
+            rate(m, text, chars, nanos);
+            double rate = rate(m, text, chars, nanos);
+            if (log != null) {
+                log.printf("engine %s: %.0f chars/s%n", engine.name(), rate);
+            }
+            if (best == null || rate > bestRate) {
+                best = engine;
+                bestRate = rate;
+            }
+        }
+        return best == null ? preferred() : best;
+    }
+
+    /** Return a copy of CONFIG using ENGINE, with the rotors ORDER
+     *  inserted. */
+    private static Machine machine(Machine config, Engine engine,
+                                   String[] order) {
+        Machine m = config.copy();
+        m.setEngine(engine);
+        m.insertRotors(order);
+        return m;
+    }
+
+    /** Return the rate in characters per second at which M converts
+     *  copies of TEXT in BUFFER, over about NANOS nanoseconds. */
+    private static double rate(Machine m, char[] text, char[] buffer,
+                               long nanos) {
+        long start = System.nanoTime();
+        long elapsed, chars = 0;
+        do {
+            System.arraycopy(text, 0, buffer, 0, text.length);
+            m.convert(buffer, 0, buffer.length);
+            chars += buffer.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return chars * 1e9 / elapsed;
+    }
+
+    /** Add ENGINE to ENGINES unless one of the same name is there. */
+    private static void add(List<Engine> engines, Engine engine) {
+        for (Engine other : engines) {
+            if (other.name().equals(engine.name())) {
+                return;
+            }
+        }
+        engines.add(engine);
+    }
+
+    /** Name standing for the engine chosen by calibrate(). */
+    static final String AUTO = "auto";
+    /** System property naming the engine machines use by default. */
+    static final String PROPERTY = "enigma.engine";
+    /** Length of the text converted while calibrating. */
+    private static final int CALIBRATION_CHARS = 1 << 14;
+    /** Engine used unless another is named. */
+    private static final Engine DEFAULT = new CompiledEngine();
+
+    /** Value of all(), once found. */
+    private static List<Engine> _all;
+
+}
@@ -0,0 +1,224 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for Engines and the engines it finds.
+ *  @author Allison Wang
+ */
+public class EnginesTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with NUMROTORS slots and NUMPAWLS pawls whose
+     *  rotors are reflector B, fixed rotor Beta, and moving rotors named
+     *  M2, M3, ..., wired as the naval rotors I-V in turn, with
+     *  notches NOTCHES[K] on rotor K.  No rotors are inserted. */
+    private Machine machine(int numRotors, int numPawls, String[] notches) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(NAVALA.get("Beta"), UPPER)));
+        String[] wirings = {"I", "II", "III", "IV", "V"};
+        for (int k = 2; k < numRotors; k += 1) {
+            rotors.add(new MovingRotor("M" + k, new Permutation(
+                NAVALA.get(wirings[k % wirings.length]), UPPER),
+                notches[k % notches.length]));
+        }
+        return new Machine(UPPER, numRotors, numPawls, rotors);
+    }
+
+    /** Insert all of M's rotors, in order, at settings chosen by
+     *  RANDOM, with a plugboard. */
+    private void setUp(Machine m, Random random) {
+        String[] names = new String[m.numRotors()];
+        names[0] = "B";
+        names[1] = "Beta";
+        for (int k = 2; k < names.length; k += 1) {
+            names[k] = "M" + k;
+        }
+        m.insertRotors(names);
+        char[] setting = new char[names.length - 1];
+        for (int i = 0; i < setting.length; i += 1) {
+            setting[i] = (char) ('A' + random.nextInt(26));
+        }
+        m.setRotors(new String(setting));
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+    }
+
+    /** Check that every engine converts N random letters in bulk with a
+     *  machine made by machine(NUMROTORS, NUMPAWLS, NOTCHES) as the
+     *  generic engine does, ending at the same positions. */
+    private void checkEngines(int numRotors, int numPawls,
+                              String[] notches, int n) {
+        Random random = new Random(11);
+        char[] text = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            text[i] = (char) ('A' + random.nextInt(26));
+        }
+        Machine generic = machine(numRotors, numPawls, notches);
+        generic.setEngine(Engines.named(GenericEngine.NAME));
+        setUp(generic, new Random(7));
+        char[] expected = text.clone();
+        generic.convert(expected, 0, n);
+        int[] want = new int[numRotors - 1];
+        generic.getPositions(want);
+        for (Engine engine : Engines.all()) {
+            Machine m = machine(numRotors, numPawls, notches);
+            m.setEngine(engine);
+            setUp(m, new Random(7));
+            char[] got = text.clone();
+            for (int i = 0; i < n; i += 1000) {
+                m.convert(got, i, Math.min(n, i + 1000));
+            }
+            assertArrayEquals(engine.name(), expected, got);
+            int[] positions = new int[numRotors - 1];
+            m.getPositions(positions);
+            assertArrayEquals(engine.name(), want, positions);
+        }
+    }
+
+    /** An engine that makes table kernels, counting the characters
+     *  they convert and the kernels it makes. */
+    private static class CountingEngine implements Engine {
+        @Override
+        public String name() {
+            return "counting";
+        }
+
+        @Override
+        public boolean supports(int alphabetSize, int numRotors) {
+            return true;
+        }
+
+        @Override
+        public Kernel kernel(SlotTables slots, String wiring) {
+            Kernel table = TABLE.kernel(slots, wiring);
+            made += 1;
+            Kernel counted = (c, positions) -> {
+                converted += 1;
+                return table.convert(c, positions);
+            };
+            kernels.put(wiring, counted);
+            return counted;
+        }
+
+        @Override
+        public Kernel cachedKernel(String wiring) {
+            return kernels.get(wiring);
+        }
+
+        /** The engine I make kernels with. */
+        private static final Engine TABLE = new TableEngine();
+        /** Number of kernels made. */
+        private int made;
+        /** Number of characters converted by those kernels. */
+        private int converted;
+        /** The kernels made, by wiring. */
+        private final HashMap<String, Kernel> kernels = new HashMap<>();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkBuiltinsFound() {
+        assertEquals(GenericEngine.NAME,
+                     Engines.named(GenericEngine.NAME).name());
+        assertEquals(TableEngine.NAME,
+                     Engines.named(TableEngine.NAME).name());
+        assertEquals(CompiledEngine.NAME,
+                     Engines.named(CompiledEngine.NAME).name());
+        assertTrue(Engines.all().size() >= 3);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkUnknownEngine() {
+        Engines.named("no such engine");
+    }
+
+    @Test
+    public void checkCopyKeepsEngine() {
+        Machine m = machine(5, 3, new String[] {"Q"});
+        Engine table = Engines.named(TableEngine.NAME);
+        m.setEngine(table);
+        assertSame(table, m.copy().engine());
+    }
+
+    @Test
+    public void checkNavalEngines() {
+        checkEngines(5, 3, new String[] {"Q", "E", "V", "J", "Z"}, 20000);
+    }
+
+    @Test
+    public void checkFrequentNotchEngines() {
+        checkEngines(8, 5, new String[] {"ABCDEFGHIJKLM", "AEIMQUY", "",
+                                         "Z"}, 20000);
+    }
+
+    @Test
+    public void checkManyRotorEngines() {
+        checkEngines(60, 40, new String[] {"AN", "C", "QRS"}, 10000);
+    }
+
+    @Test
+    public void checkReinsertUsesCachedKernel() {
+        Machine m = machine(5, 3, new String[] {"Q", "E", "V", "J", "Z"});
+        CountingEngine engine = new CountingEngine();
+        m.setEngine(engine);
+        setUp(m, new Random(3));
+        char[] text = new char[5000];
+        Arrays.fill(text, 'A');
+        m.convert(text, 0, text.length);
+        assertEquals(1, engine.made);
+        Machine.Order order = m.order();
+        m.insertRotors(order);
+        m.setRotors("AAAA");
+        engine.converted = 0;
+        text = "HELLO".toCharArray();
+        m.convert(text, 0, text.length);
+        assertEquals(5, engine.converted);
+        m.insertRotors(new String[] {"B", "Beta", "M2", "M3", "M4"});
+        engine.converted = 0;
+        m.convert(text, 0, text.length);
+        assertEquals(5, engine.converted);
+        assertEquals(1, engine.made);
+    }
+
+    @Test
+    public void checkShortSectionsMakeKernel() {
+        Machine m = machine(5, 3, new String[] {"Q", "E", "V", "J", "Z"});
+        CountingEngine engine = new CountingEngine();
+        m.setEngine(engine);
+        char[] text = new char[1000];
+        Arrays.fill(text, 'A');
+        for (int i = 0; i < 6; i += 1) {
+            setUp(m, new Random(i));
+            m.convert(text, 0, text.length);
+        }
+        assertEquals(1, engine.made);
+        assertTrue(engine.converted > 0);
+    }
+
+    @Test
+    public void checkCalibrationPicksSupportedEngine() {
+        Machine m = machine(5, 3, new String[] {"Q", "E", "V", "J", "Z"});
+        Engine engine = Engines.calibrate(m, 20, null);
+        assertTrue(Engines.all().contains(engine));
+        assertTrue(engine.supports(26, 5));
+    }
+
+}
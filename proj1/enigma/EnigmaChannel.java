@@ -0,0 +1,144 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/** A WritableByteChannel that decodes the bytes written to it in a
+ *  given charset, converts the text with a Machine, and writes the
+ *  result, encoded in the same charset, to another channel.  The text
+ *  must be as for Machine.convert(char[], int, int): letters of the
+ *  alphabet and blanks.  A multi-byte character split between writes is
+ *  held until its remaining bytes arrive.  Every write consumes all the
+ *  bytes given, so the underlying channel should be in blocking mode.
+ *  Closing me closes it.
+ *  @author Allison Wang
+ */
+class EnigmaChannel implements WritableByteChannel {
+
+    /** A channel converting with M, which must be set up and not
+     *  otherwise used while I am open, and writing to OUT in CHARSET. */
+    EnigmaChannel(WritableByteChannel out, Machine m, Charset charset) {
+        _out = out;
+        _machine = m;
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        _bytesIn = ByteBuffer.allocate(BUFFER);
+        _chars = CharBuffer.allocate(BUFFER);
+        _bytesOut = ByteBuffer.allocate(
+            (int) Math.ceil(BUFFER * _encoder.maxBytesPerChar()));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(_bytesIn.remaining(), src.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + n);
+            _bytesIn.put(slice);
+            src.position(src.position() + n);
+            drain(false);
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _out.isOpen() && !_closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            drain(true);
+        } finally {
+            _out.close();
+        }
+    }
+
+    /** Decode, convert and send on the bytes in _bytesIn, keeping an
+     *  incomplete final character for later unless END. */
+    private void drain(boolean end) throws IOException {
+        _bytesIn.flip();
+        while (true) {
+            CoderResult result = _decoder.decode(_bytesIn, _chars, end);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (end && result.isUnderflow()) {
+                result = _decoder.flush(_chars);
+                if (result.isError()) {
+                    result.throwException();
+                }
+            }
+            convertChars();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (end && _bytesIn.hasRemaining()) {
+            throw new CharacterCodingException();
+        }
+        _bytesIn.compact();
+    }
+
+    /** Convert the characters in _chars and write them out. */
+    private void convertChars() throws IOException {
+        char[] chars = _chars.array();
+        int end = _machine.convert(chars, 0, _chars.position());
+        CharBuffer converted = CharBuffer.wrap(chars, 0, end);
+        while (converted.hasRemaining()) {
+            CoderResult result = _encoder.encode(converted, _bytesOut, false);
+            if (result.isError()) {
+                result.throwException();
+            }
+            _bytesOut.flip();
+            while (_bytesOut.hasRemaining()) {
+                _out.write(_bytesOut);
+            }
+            _bytesOut.clear();
+        }
+        _chars.clear();
+    }
+
+    /** Size of the byte and character buffers. */
+    private static final int BUFFER = 1 << 13;
+
+    /** Channel written to. */
+    private final WritableByteChannel _out;
+    /** Machine that converts. */
+    private final Machine _machine;
+    /** Decodes the bytes written to me. */
+    private final CharsetDecoder _decoder;
+    /** Encodes the converted text. */
+    private final CharsetEncoder _encoder;
+    /** Bytes written to me, not yet decoded. */
+    private final ByteBuffer _bytesIn;
+    /** Decoded characters. */
+    private final CharBuffer _chars;
+    /** Encoded converted characters. */
+    private final ByteBuffer _bytesOut;
+    /** True once closed. */
+    private boolean _closed;
+
+}
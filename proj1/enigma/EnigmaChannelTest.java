@@ -0,0 +1,71 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static enigma.TestMachines.*;
+
+/** The suite of all JUnit tests for the EnigmaChannel class.
+ *  @author Allison Wang
+ */
+public class EnigmaChannelTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkBytesSplitAnywhere() throws IOException {
+        byte[] bytes = MSG.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (EnigmaChannel channel = new EnigmaChannel(
+                 Channels.newChannel(result), axle(),
+                 StandardCharsets.UTF_8)) {
+            for (int i = 0; i < bytes.length; i += 7) {
+                ByteBuffer piece = ByteBuffer.wrap(
+                    bytes, i, Math.min(7, bytes.length - i));
+                assertEquals(piece.remaining(), channel.write(piece));
+            }
+        }
+        assertEquals(axle().convert(MSG),
+                     new String(result.toByteArray(),
+                                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void checkSplitMultiByteCharacter() throws IOException {
+        Alphabet greek = new CharacterRange('\u0391', '\u03a9');
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(
+            "(\u0391\u0392) (\u0393\u0394)", greek)));
+        rotors.add(new MovingRotor("M", new Permutation(
+            "(\u0391\u0393\u0395)", greek), "\u0391"));
+        Machine m = new Machine(greek, 2, 1, rotors);
+        m.insertRotors(new String[] {"R", "M"});
+        m.setRotors("\u0391");
+        byte[] bytes = "\u0391\u0392".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (EnigmaChannel channel = new EnigmaChannel(
+                 Channels.newChannel(result), m, StandardCharsets.UTF_8)) {
+            for (byte b : bytes) {
+                channel.write(ByteBuffer.wrap(new byte[] {b}));
+            }
+        }
+        m.setRotors("\u0391");
+        assertEquals(m.convert("\u0391\u0392"),
+                     new String(result.toByteArray(),
+                                StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,83 @@
+package enigma;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that converts the text read through it with a Machine.  As
+ *  with Machine.convert(char[], int, int), the text must consist of
+ *  characters in the machine's alphabet (in either case) and blanks,
+ *  which are dropped; any other character causes an EnigmaException.
+ *  Characters are converted in place in the caller's array as they
+ *  arrive, so no intermediate copies are made.
+ *  @author Allison Wang
+ */
+class EnigmaReader extends FilterReader {
+
+    /** A reader of the characters of IN converted by M, which must be
+     *  set up and not otherwise used while I am read. */
+    EnigmaReader(Reader in, Machine m) {
+        super(in);
+        _machine = m;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] one = new char[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = in.read(cbuf, off, len);
+            if (n < 0) {
+                return -1;
+            }
+            int end = _machine.convert(cbuf, off, off + n);
+            if (end > off) {
+                return end - off;
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        char[] buffer = new char[(int) Math.min(n, SKIP_BUFFER)];
+        long skipped = 0;
+        while (skipped < n) {
+            int k = read(buffer, 0, (int) Math.min(buffer.length,
+                                                   n - skipped));
+            if (k < 0) {
+                break;
+            }
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Size of the scratch buffer used to skip characters. */
+    private static final int SKIP_BUFFER = 1 << 10;
+
+    /** Machine that converts. */
+    private final Machine _machine;
+
+}
@@ -0,0 +1,52 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static enigma.TestMachines.*;
+
+/** The suite of all JUnit tests for the EnigmaReader class.
+ *  @author Allison Wang
+ */
+public class EnigmaReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkReadInSmallPieces() throws IOException {
+        Reader reader = new EnigmaReader(new StringReader(MSG), axle());
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[3];
+        for (int n = reader.read(buffer, 0, 3); n >= 0;
+             n = reader.read(buffer, 0, 3)) {
+            assertTrue(n > 0);
+            text.append(buffer, 0, n);
+        }
+        assertEquals(axle().convert(MSG), text.toString());
+    }
+
+    @Test
+    public void checkReadChars() throws IOException {
+        Reader reader = new EnigmaReader(new StringReader("  a b"), axle());
+        String expected = axle().convert("AB");
+        assertEquals(expected.charAt(0), reader.read());
+        assertEquals(expected.charAt(1), reader.read());
+        assertEquals(-1, reader.read());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCharacter() throws IOException {
+        new EnigmaReader(new StringReader("AB;"), axle()).read(new char[8]);
+    }
+
+}
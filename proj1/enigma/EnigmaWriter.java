@@ -0,0 +1,64 @@
+package enigma;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that converts the text written through it with a Machine
+ *  before passing it on.  As with Machine.convert(char[], int, int), the
+ *  text must consist of characters in the machine's alphabet (in either
+ *  case) and blanks, which are dropped; any other character causes an
+ *  EnigmaException.  Since the caller's characters must not be altered,
+ *  they are converted a chunk at a time in one scratch buffer.
+ *  @author Allison Wang
+ */
+class EnigmaWriter extends FilterWriter {
+
+    /** A writer converting with M, which must be set up and not otherwise
+     *  used while I am written, and writing the results to OUT. */
+    EnigmaWriter(Writer out, Machine m) {
+        super(out);
+        _machine = m;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        _buffer[0] = (char) c;
+        flushBuffer(1);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = 0; i < len; i += _buffer.length) {
+            int n = Math.min(_buffer.length, len - i);
+            System.arraycopy(cbuf, off + i, _buffer, 0, n);
+            flushBuffer(n);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = 0; i < len; i += _buffer.length) {
+            int n = Math.min(_buffer.length, len - i);
+            str.getChars(off + i, off + i + n, _buffer, 0);
+            flushBuffer(n);
+        }
+    }
+
+    /** Convert the first N characters of _buffer and write the result. */
+    private void flushBuffer(int n) throws IOException {
+        int end = _machine.convert(_buffer, 0, n);
+        if (end > 0) {
+            out.write(_buffer, 0, end);
+        }
+    }
+
+    /** Size of the scratch buffer. */
+    private static final int BUFFER = 1 << 13;
+
+    /** Machine that converts. */
+    private final Machine _machine;
+    /** Characters being converted. */
+    private final char[] _buffer = new char[BUFFER];
+
+}
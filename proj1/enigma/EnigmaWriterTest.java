@@ -0,0 +1,50 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static enigma.TestMachines.*;
+
+/** The suite of all JUnit tests for the EnigmaWriter class.
+ *  @author Allison Wang
+ */
+public class EnigmaWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkWritePieces() throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = new EnigmaWriter(result, axle())) {
+            writer.write(MSG, 0, 10);
+            writer.write(MSG.toCharArray(), 10, 20);
+            writer.write(MSG.charAt(30));
+            writer.write(MSG.substring(31));
+        }
+        assertEquals(axle().convert(MSG), result.toString());
+    }
+
+    @Test
+    public void checkRoundTrip() throws IOException {
+        StringWriter cipher = new StringWriter();
+        try (Writer writer = new EnigmaWriter(cipher, axle())) {
+            writer.write(MSG);
+        }
+        StringWriter plain = new StringWriter();
+        new EnigmaReader(new StringReader(cipher.toString()), axle())
+            .transferTo(plain);
+        assertEquals(MSG.replace(" ", "").toUpperCase(), plain.toString());
+    }
+
+}
@@ -16,4 +16,9 @@ class FixedRotor extends Rotor {
     @Override
     void advance() {
     }
+
+    @Override
+    Rotor copy() {
+        return new FixedRotor(name(), permutation());
+    }
 }
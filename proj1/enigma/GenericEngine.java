@@ -0,0 +1,27 @@
+package enigma;
+
+/** The engine that supplies no kernel, so that a machine converts
+ *  with its rotors and stepper directly.  It supports everything.
+ *  @author Allison Wang
+ */
+public final class GenericEngine implements Engine {
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(int alphabetSize, int numRotors) {
+        return true;
+    }
+
+    @Override
+    public Kernel kernel(SlotTables slots, String wiring) {
+        return null;
+    }
+
+    /** My name. */
+    static final String NAME = "generic";
+
+}
@@ -0,0 +1,148 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import static enigma.EnigmaException.*;
+
+/** Splits the input of Main into settings lines, message lines, and lines
+ *  to be copied to the output unconverted.  A section starts with a
+ *  line beginning with "*" and continues up to the next line whose first
+ *  word is "*"; blank lines just before such a line belong to the next
+ *  section and are copied rather than converted.
+ *  @author Allison Wang
+ */
+class InputReader {
+
+    /** Kinds of line returned by next(). */
+    static final int SETTINGS = 0, MESSAGE = 1, VERBATIM = 2;
+
+    /** A reader of the lines of INPUT. */
+    InputReader(BufferedReader input) {
+        _input = input;
+        _pending = new ArrayDeque<>();
+        _state = START;
+    }
+
+    /** Return the next line, or null at the end of the input.  Its kind
+     *  is then given by kind(). */
+    String next() {
+        if (_state == START) {
+            String word = nextWordLine();
+            if (word == null && _pending.isEmpty()) {
+                return null;
+            }
+            int k = word == null ? 0 : skipBlanks(word, 0);
+            if (word == null || word.charAt(k) != '*') {
+                throw error("Missing * at the start of config");
+            }
+            _state = SEEK;
+        }
+        if (_state == SEEK) {
+            String line = readLine();
+            if (line == null) {
+                throw error("Missing * at the start of config");
+            }
+            if (line.length() > 1 && line.charAt(0) == '*') {
+                _kind = SETTINGS;
+                _state = IN_MESSAGE;
+            } else {
+                _kind = VERBATIM;
+            }
+            return line;
+        }
+        String word = nextWordLine();
+        if (word != null && startsWithStar(word)) {
+            _state = SEEK;
+            return next();
+        }
+        String line = readLine();
+        if (line != null) {
+            _kind = MESSAGE;
+        }
+        return line;
+    }
+
+    /** Return the kind of the line last returned by next(). */
+    int kind() {
+        return _kind;
+    }
+
+    /** Return true if a call to next() will probably not block. */
+    boolean ready() {
+        try {
+            return !_pending.isEmpty() || _input.ready();
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns true iff the first word of LINE is "*". */
+    private static boolean startsWithStar(String line) {
+        int k = skipBlanks(line, 0);
+        return k < line.length() && line.charAt(k) == '*'
+            && (k + 1 == line.length()
+                || Character.isWhitespace(line.charAt(k + 1)));
+    }
+
+    /** Return the index of the first non-whitespace character of LINE at
+     *  or after K, or LINE.length() if there is none. */
+    private static int skipBlanks(String line, int k) {
+        while (k < line.length() && Character.isWhitespace(line.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return the first line not yet returned that contains a word,
+     *  without consuming it, or null if there is none. */
+    private String nextWordLine() {
+        for (String line : _pending) {
+            if (skipBlanks(line, 0) < line.length()) {
+                return line;
+            }
+        }
+        while (true) {
+            String line = readRawLine();
+            if (line == null) {
+                return null;
+            }
+            _pending.addLast(line);
+            if (skipBlanks(line, 0) < line.length()) {
+                return line;
+            }
+        }
+    }
+
+    /** Consume and return the next line, or null at the end. */
+    private String readLine() {
+        if (!_pending.isEmpty()) {
+            return _pending.removeFirst();
+        }
+        return readRawLine();
+    }
+
+    /** Return the next line of _input, or null at the end. */
+    private String readRawLine() {
+        try {
+            return _input.readLine();
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+    }
+
+    /** States: before the first settings line, looking for a settings
+     *  line, and reading a message. */
+    private static final int START = 0, SEEK = 1, IN_MESSAGE = 2;
+
+    /** Source of lines. */
+    private final BufferedReader _input;
+    /** Lines read ahead of the current position. */
+    private final ArrayDeque<String> _pending;
+    /** One of START, SEEK, or IN_MESSAGE. */
+    private int _state;
+    /** Kind of the last line returned. */
+    private int _kind;
+
+}
@@ -0,0 +1,72 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+/** The suite of all JUnit tests for the InputReader class.
+ *  @author Allison Wang
+ */
+public class InputReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the lines of INPUT, each prefixed by its kind as
+     *  S (settings), M (message), or V (verbatim), joined by "|". */
+    private String classify(String input) {
+        InputReader reader =
+            new InputReader(new BufferedReader(new StringReader(input)));
+        StringBuilder result = new StringBuilder();
+        for (String line = reader.next(); line != null;
+             line = reader.next()) {
+            if (result.length() > 0) {
+                result.append('|');
+            }
+            result.append("SMV".charAt(reader.kind())).append(line);
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSections() {
+        assertEquals("S* B I|Mhello|Mworld|S* B II|Mfoo",
+                     classify("* B I\nhello\nworld\n* B II\nfoo\n"));
+    }
+
+    @Test
+    public void checkBlankLines() {
+        assertEquals("V|S* B I|Mhello|V|V  |S* B II|M|M ",
+                     classify("\n* B I\nhello\n\n  \n* B II\n\n \n"));
+    }
+
+    @Test
+    public void checkStarMustBeAWord() {
+        assertEquals("S* B I|M*B II",
+                     classify("* B I\n*B II\n"));
+    }
+
+    @Test
+    public void checkEmpty() {
+        assertEquals("", classify(""));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMissingStar() {
+        classify("hello\n* B I\n");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkOnlyBlanks() {
+        classify("  \n\n");
+    }
+}
@@ -0,0 +1,16 @@
+package enigma;
+
+/** The conversion performed by one particular set of rotors in their
+ *  slots, as made by an Engine.  A kernel holds no state of its
+ *  own: the settings of the rotors are passed in and updated in place,
+ *  so one kernel serves every machine with the same rotors.
+ *  @author Allison Wang
+ */
+public interface Kernel {
+
+    /** Advance the rotors whose settings, by slot, are POSITIONS, as
+     *  Stepper.step() would, and return the conversion of C (an index
+     *  into the alphabet) by the rotors, not including any plugboard. */
+    int convert(int c, int[] positions);
+
+}
@@ -0,0 +1,558 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Generates a Kernel specialized to one set of rotors in their slots, as
+ *  a hidden class.  The generated convert method is straight-line code:
+ *  the loop over slots is unrolled, the stepping rule is worked out for
+ *  the particular slots that have pawls and notches, and each rotor's
+ *  wiring is a table held in a static final field, which the JIT treats
+ *  as a constant.  Each table is doubled, so that a rotor at setting S
+ *  maps X to TABLE[X + S] - S, plus the alphabet size if that is
+ *  negative; settings advance and wrap the same way, by arithmetic
+ *  rather than by tests.  With no branches at all, the class needs no
+ *  stack map frames, and the tiny class-file writer here suffices.
+ *
+ *  Kernels are cached by the description of the rotors they implement
+ *  (Machine.wiring()), so machines with the same rotor order share one.
+ *  Anything that goes wrong in generating or loading a kernel yields
+ *  null, and the caller converts without one.  Setting the system
+ *  property enigma.kernels to false disables kernels altogether.
+ *  @author Allison Wang
+ */
+final class KernelCompiler {
+
+    /** Return a kernel for the rotors in SLOTS, which are described by
+     *  WIRING, or null if none can be had. */
+    static Kernel kernel(SlotTables slots, String wiring) {
+        if (slots.slots() == 0 || !supports(slots.size())) {
+            return null;
+        }
+        synchronized (KERNELS) {
+            Kernel kernel = KERNELS.get(wiring);
+            if (kernel != null) {
+                return kernel;
+            }
+        }
+        Kernel kernel;
+        try {
+            kernel = new KernelCompiler(slots).define();
+        } catch (ReflectiveOperationException | LinkageError
+                 | IllegalArgumentException | SecurityException
+                 | IOException excp) {
+            return null;
+        }
+        synchronized (KERNELS) {
+            KERNELS.put(wiring, kernel);
+        }
+        return kernel;
+    }
+
+    /** Return the kernel already generated for rotors described by
+     *  WIRING, or null if there is none. */
+    static Kernel cached(String wiring) {
+        synchronized (KERNELS) {
+            return KERNELS.get(wiring);
+        }
+    }
+
+    /** Return true iff kernels are enabled and may be generated for an
+     *  alphabet of ALPHABETSIZE characters. */
+    static boolean supports(int alphabetSize) {
+        return ENABLED && alphabetSize <= MAX_ALPHABET;
+    }
+
+    /** A compiler for the rotors in SLOTS. */
+    private KernelCompiler(SlotTables slots) {
+        _slots = slots;
+        _size = slots.size();
+        _last = slots.slots() - 1;
+        _first = slots.firstPawl();
+        _tables = new ArrayList<>();
+        _pool = new ByteArrayOutputStream();
+        _poolOut = new DataOutputStream(_pool);
+        _constants = new HashMap<>();
+        _forward = new int[slots.slots()];
+        _backward = new int[slots.slots()];
+        _notches = new int[slots.slots()];
+        for (int i = 0; i <= _last; i += 1) {
+            _forward[i] = table(i, false);
+            _backward[i] = i == 0 ? -1 : table(i, true);
+            _notches[i] = -1;
+            if (i >= _first && slots.rotates(i) && slots.hasNotches(i)) {
+                int[] notch = new int[_size];
+                for (int s = 0; s < _size; s += 1) {
+                    notch[s] = slots.notch(i, s) ? 1 : 0;
+                }
+                _notches[i] = _tables.size();
+                _tables.add(notch);
+            }
+        }
+    }
+
+    /** Add the doubled table of the rotor in SLOT, or of its inverse if
+     *  INVERSE, to the tables, and return its index. */
+    private int table(int slot, boolean inverse) {
+        int[] table = new int[2 * _size];
+        for (int x = 0; x < _size; x += 1) {
+            int y = inverse ? _slots.backward(slot, x)
+                : _slots.forward(slot, x);
+            table[x] = table[x + _size] = y;
+        }
+        _tables.add(table);
+        return _tables.size() - 1;
+    }
+
+    /** Generate, load and instantiate my kernel. */
+    private Kernel define() throws IOException,
+                                   ReflectiveOperationException {
+        byte[] bytes = classFile();
+        MethodHandles.Lookup lookup = MethodHandles.lookup()
+            .defineHiddenClassWithClassData(bytes, _tables.toArray(), true);
+        return (Kernel) lookup.lookupClass().getDeclaredConstructor()
+            .newInstance();
+    }
+
+    /** Return the class file of my kernel. */
+    private byte[] classFile() throws IOException {
+        int thisClass = classRef(CLASS_NAME);
+        int superClass = classRef("java/lang/Object");
+        int kernel = classRef("enigma/Kernel");
+        byte[] init = initCode();
+        byte[] clinit = clinitCode();
+        byte[] convert = convertCode();
+        int code = utf8("Code");
+        int fieldDesc = utf8("[I");
+        int[] fieldNames = new int[_tables.size()];
+        for (int k = 0; k < fieldNames.length; k += 1) {
+            fieldNames[k] = utf8("t" + k);
+        }
+        int initName = utf8("<init>"), initDesc = utf8("()V");
+        int clinitName = utf8("<clinit>");
+        int convertName = utf8("convert"), convertDesc = utf8("(I[I)I");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_VERSION);
+        out.writeShort(_count + 1);
+        _poolOut.flush();
+        _pool.writeTo(out);
+        out.writeShort(ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(kernel);
+        out.writeShort(fieldNames.length);
+        for (int name : fieldNames) {
+            out.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+            out.writeShort(name);
+            out.writeShort(fieldDesc);
+            out.writeShort(0);
+        }
+        out.writeShort(3);
+        method(out, ACC_PUBLIC, initName, initDesc, code, init, 1, 1);
+        method(out, ACC_STATIC, clinitName, initDesc, code, clinit, 4, 1);
+        method(out, ACC_PUBLIC, convertName, convertDesc, code, convert,
+               MAX_STACK, _locals);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Write to OUT a method with access flags ACCESS, name and
+     *  descriptor at constants NAME and DESC, and bytecode BODY in a
+     *  Code attribute named by constant CODE, using at most MAXSTACK
+     *  stack entries and MAXLOCALS locals. */
+    private static void method(DataOutputStream out, int access, int name,
+                               int desc, int code, byte[] body,
+                               int maxStack, int maxLocals)
+        throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(code);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /** Return the code of the constructor. */
+    private byte[] initCode() throws IOException {
+        int object = methodRef("java/lang/Object", "<init>", "()V");
+        Code c = new Code();
+        c.op(ALOAD_0);
+        c.op(INVOKESPECIAL).u2(object);
+        c.op(RETURN);
+        return c.bytes();
+    }
+
+    /** Return the code of the static initializer, which sets each field
+     *  tK to element K of the class data. */
+    private byte[] clinitCode() throws IOException {
+        int lookup = methodRef("java/lang/invoke/MethodHandles", "lookup",
+                               "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        int classData = methodRef("java/lang/invoke/MethodHandles",
+                                  "classData",
+                                  "(Ljava/lang/invoke/MethodHandles$Lookup;"
+                                  + "Ljava/lang/String;Ljava/lang/Class;)"
+                                  + "Ljava/lang/Object;");
+        int objects = classRef("[Ljava/lang/Object;");
+        int ints = classRef("[I");
+        Code c = new Code();
+        c.op(INVOKESTATIC).u2(lookup);
+        c.op(LDC_W).u2(string("_"));
+        c.op(LDC_W).u2(objects);
+        c.op(INVOKESTATIC).u2(classData);
+        c.op(CHECKCAST).u2(objects);
+        c.op(ASTORE).u1(0);
+        for (int k = 0; k < _tables.size(); k += 1) {
+            c.op(ALOAD).u1(0);
+            c.push(k);
+            c.op(AALOAD);
+            c.op(CHECKCAST).u2(ints);
+            c.op(PUTSTATIC).u2(field(k));
+        }
+        c.op(RETURN);
+        return c.bytes();
+    }
+
+    /** Return the code of convert(int c, int[] positions).  Locals 1 and
+     *  2 are the arguments; then come a temporary, whether each slot
+     *  moves, and each slot's setting after moving. */
+    private byte[] convertCode() throws IOException {
+        final int arg = 1, positions = 2, temp = 3;
+        final int moves = 4, settings = moves + _slots.slots();
+        _locals = settings + _slots.slots();
+        Code c = new Code();
+
+        for (int i = _first; i <= _last; i += 1) {
+            if (!_slots.rotates(i)) {
+                continue;
+            }
+            boolean any = false;
+            if (i == _last) {
+                c.push(1);
+                any = true;
+            }
+            if (i < _last && _notches[i + 1] >= 0) {
+                notchAt(c, i + 1);
+                any = true;
+            }
+            if (i > _first && _notches[i] >= 0) {
+                notchAt(c, i);
+                if (any) {
+                    c.op(IOR);
+                }
+                any = true;
+            }
+            if (!any) {
+                c.push(0);
+            }
+            c.store(moves + i);
+        }
+        for (int i = _first; i <= _last; i += 1) {
+            if (!_slots.rotates(i)) {
+                continue;
+            }
+            c.op(ALOAD).u1(positions);
+            c.push(i);
+            c.op(IALOAD);
+            c.load(moves + i);
+            c.op(IADD);
+            c.store(temp);
+            c.op(ALOAD).u1(positions);
+            c.push(i);
+            c.load(temp);
+            c.push(_size - 1);
+            c.load(temp);
+            c.op(ISUB);
+            c.push(31);
+            c.op(ISHR);
+            c.push(-_size);
+            c.op(IAND);
+            c.op(IADD);
+            c.op(IASTORE);
+        }
+        for (int i = 0; i <= _last; i += 1) {
+            c.op(ALOAD).u1(positions);
+            c.push(i);
+            c.op(IALOAD);
+            c.store(settings + i);
+        }
+
+        c.load(arg);
+        for (int i = _last; i >= 0; i -= 1) {
+            through(c, _forward[i], settings + i, temp);
+        }
+        for (int i = 1; i <= _last; i += 1) {
+            through(c, _backward[i], settings + i, temp);
+        }
+        c.op(IRETURN);
+        return c.bytes();
+    }
+
+    /** Append to C code pushing 1 if the rotor in SLOT is at a notch,
+     *  and otherwise 0. */
+    private void notchAt(Code c, int slot) throws IOException {
+        c.op(GETSTATIC).u2(field(_notches[slot]));
+        c.op(ALOAD).u1(2);
+        c.push(slot);
+        c.op(IALOAD);
+        c.op(IALOAD);
+    }
+
+    /** Append to C code replacing the index on top of the stack by its
+     *  image under table TABLE at the setting in local SETTING, using
+     *  local TEMP. */
+    private void through(Code c, int table, int setting, int temp)
+        throws IOException {
+        c.op(GETSTATIC).u2(field(table));
+        c.op(SWAP);
+        c.load(setting);
+        c.op(IADD);
+        c.op(IALOAD);
+        c.load(setting);
+        c.op(ISUB);
+        c.store(temp);
+        c.load(temp);
+        c.load(temp);
+        c.push(31);
+        c.op(ISHR);
+        c.push(_size);
+        c.op(IAND);
+        c.op(IADD);
+    }
+
+    /** Return the index of the constant for field tK. */
+    private int field(int k) throws IOException {
+        return ref(TAG_FIELD, CLASS_NAME, "t" + k, "[I");
+    }
+
+    /** Return the index of the constant for static method NAME with
+     *  descriptor DESC of class OWNER. */
+    private int methodRef(String owner, String name, String desc)
+        throws IOException {
+        return ref(TAG_METHOD, owner, name, desc);
+    }
+
+    /** Return the index of a reference constant with tag TAG to member
+     *  NAME with descriptor DESC of class OWNER. */
+    private int ref(int tag, String owner, String name, String desc)
+        throws IOException {
+        String key = tag + " " + owner + " " + name + " " + desc;
+        Integer index = _constants.get(key);
+        if (index == null) {
+            int cls = classRef(owner);
+            int nameAndType = nameAndType(name, desc);
+            _poolOut.writeByte(tag);
+            _poolOut.writeShort(cls);
+            _poolOut.writeShort(nameAndType);
+            index = add(key);
+        }
+        return index;
+    }
+
+    /** Return the index of the NameAndType constant for NAME and
+     *  DESC. */
+    private int nameAndType(String name, String desc) throws IOException {
+        String key = "NT " + name + " " + desc;
+        Integer index = _constants.get(key);
+        if (index == null) {
+            int n = utf8(name), d = utf8(desc);
+            _poolOut.writeByte(TAG_NAME_AND_TYPE);
+            _poolOut.writeShort(n);
+            _poolOut.writeShort(d);
+            index = add(key);
+        }
+        return index;
+    }
+
+    /** Return the index of the Class constant for internal name NAME. */
+    private int classRef(String name) throws IOException {
+        return wrapper(TAG_CLASS, name);
+    }
+
+    /** Return the index of the String constant S. */
+    private int string(String s) throws IOException {
+        return wrapper(TAG_STRING, s);
+    }
+
+    /** Return the index of a constant with tag TAG referring to the Utf8
+     *  constant S. */
+    private int wrapper(int tag, String s) throws IOException {
+        String key = tag + " " + s;
+        Integer index = _constants.get(key);
+        if (index == null) {
+            int text = utf8(s);
+            _poolOut.writeByte(tag);
+            _poolOut.writeShort(text);
+            index = add(key);
+        }
+        return index;
+    }
+
+    /** Return the index of the Integer constant X. */
+    private int integer(int x) throws IOException {
+        String key = "I " + x;
+        Integer index = _constants.get(key);
+        if (index == null) {
+            _poolOut.writeByte(TAG_INTEGER);
+            _poolOut.writeInt(x);
+            index = add(key);
+        }
+        return index;
+    }
+
+    /** Return the index of the Utf8 constant S. */
+    private int utf8(String s) throws IOException {
+        String key = "U " + s;
+        Integer index = _constants.get(key);
+        if (index == null) {
+            _poolOut.writeByte(TAG_UTF8);
+            _poolOut.writeUTF(s);
+            index = add(key);
+        }
+        return index;
+    }
+
+    /** Record that the constant just written has KEY, and return its
+     *  index. */
+    private int add(String key) {
+        _count += 1;
+        _constants.put(key, _count);
+        return _count;
+    }
+
+    /** Bytecode being assembled for one method. */
+    private class Code {
+
+        /** Append OPCODE.  Returns this. */
+        Code op(int opcode) {
+            _code.write(opcode);
+            return this;
+        }
+
+        /** Append the byte X.  Returns this. */
+        Code u1(int x) {
+            _code.write(x);
+            return this;
+        }
+
+        /** Append the two-byte X.  Returns this. */
+        Code u2(int x) {
+            _code.write(x >>> 8);
+            _code.write(x);
+            return this;
+        }
+
+        /** Append an instruction pushing the int X. */
+        void push(int x) throws IOException {
+            if (x >= -1 && x <= 5) {
+                op(ICONST_0 + x);
+            } else if (x == (byte) x) {
+                op(BIPUSH).u1(x);
+            } else if (x == (short) x) {
+                op(SIPUSH).u2(x);
+            } else {
+                op(LDC_W).u2(integer(x));
+            }
+        }
+
+        /** Append an instruction pushing int local LOCAL. */
+        void load(int local) {
+            local(ILOAD, local);
+        }
+
+        /** Append an instruction storing into int local LOCAL. */
+        void store(int local) {
+            local(ISTORE, local);
+        }
+
+        /** Append OPCODE, which takes a local-variable index, for local
+         *  LOCAL. */
+        private void local(int opcode, int local) {
+            if (local > 0xff) {
+                op(WIDE).op(opcode).u2(local);
+            } else {
+                op(opcode).u1(local);
+            }
+        }
+
+        /** Return the code assembled. */
+        byte[] bytes() {
+            return _code.toByteArray();
+        }
+
+        /** The code. */
+        private final ByteArrayOutputStream _code =
+            new ByteArrayOutputStream();
+    }
+
+    /** True unless kernels are disabled. */
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("enigma.kernels", "true"));
+    /** Largest alphabet for which kernels are generated. */
+    private static final int MAX_ALPHABET = 1 << 16;
+    /** Kernels, by Machine.wiring(). */
+    private static final LruCache<String, Kernel> KERNELS =
+        new LruCache<>(256);
+    /** Internal name of generated classes, before the JVM's suffix. */
+    private static final String CLASS_NAME = "enigma/CompiledKernel";
+    /** Class-file major version generated (Java 8). */
+    private static final int CLASS_VERSION = 52;
+    /** Most operand-stack entries convert() uses. */
+    private static final int MAX_STACK = 6;
+
+    /** Access flags. */
+    private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002,
+        ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+    /** Constant pool tags. */
+    private static final int TAG_UTF8 = 1, TAG_INTEGER = 3, TAG_CLASS = 7,
+        TAG_STRING = 8, TAG_FIELD = 9, TAG_METHOD = 10,
+        TAG_NAME_AND_TYPE = 12;
+    /** Opcodes. */
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11,
+        LDC_W = 0x13, ILOAD = 0x15, ALOAD = 0x19, ALOAD_0 = 0x2a,
+        IALOAD = 0x2e, AALOAD = 0x32, ISTORE = 0x36, ASTORE = 0x3a,
+        IASTORE = 0x4f, SWAP = 0x5f, IADD = 0x60, ISUB = 0x64,
+        ISHR = 0x7a, IAND = 0x7e, IOR = 0x80, IRETURN = 0xac,
+        RETURN = 0xb1, GETSTATIC = 0xb2, PUTSTATIC = 0xb3,
+        INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, CHECKCAST = 0xc0,
+        WIDE = 0xc4;
+
+    /** The rotors, by slot. */
+    private final SlotTables _slots;
+    /** Alphabet size. */
+    private final int _size;
+    /** Last slot, and first slot with a pawl. */
+    private final int _last, _first;
+    /** Tables to be passed as class data, in field order. */
+    private final ArrayList<int[]> _tables;
+    /** Index in _tables of each slot's forward and backward tables. */
+    private final int[] _forward, _backward;
+    /** Index in _tables of each slot's notch table, or -1 if none. */
+    private final int[] _notches;
+    /** Constant pool entries written so far. */
+    private final ByteArrayOutputStream _pool;
+    /** Writes to _pool. */
+    private final DataOutputStream _poolOut;
+    /** Index of each constant, by a key describing it. */
+    private final HashMap<String, Integer> _constants;
+    /** Number of constants. */
+    private int _count;
+    /** Number of locals used by convert. */
+    private int _locals;
+
+}
@@ -0,0 +1,155 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KernelCompiler class.
+ *  @author Allison Wang
+ */
+public class KernelCompilerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with NUMROTORS slots and NUMPAWLS pawls whose
+     *  rotors are reflector B, fixed rotor Beta, and moving rotors named
+     *  M2, M3, ..., wired as the naval rotors I-V in turn, with
+     *  notches NOTCHES[K] on rotor K.  All rotors are inserted, in order,
+     *  at settings chosen by RANDOM. */
+    private Machine machine(int numRotors, int numPawls, String[] notches,
+                            Random random) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(NAVALA.get("Beta"), UPPER)));
+        String[] names = new String[numRotors];
+        names[0] = "B";
+        names[1] = "Beta";
+        String[] wirings = {"I", "II", "III", "IV", "V"};
+        for (int k = 2; k < numRotors; k += 1) {
+            names[k] = "M" + k;
+            rotors.add(new MovingRotor(names[k], new Permutation(
+                NAVALA.get(wirings[k % wirings.length]), UPPER),
+                notches[k % notches.length]));
+        }
+        Machine m = new Machine(UPPER, numRotors, numPawls, rotors);
+        m.insertRotors(names);
+        char[] setting = new char[numRotors - 1];
+        for (int i = 0; i < setting.length; i += 1) {
+            setting[i] = (char) ('A' + random.nextInt(26));
+        }
+        m.setRotors(new String(setting));
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        return m;
+    }
+
+    /** Check that converting N random letters in bulk with a machine
+     *  made by machine(NUMROTORS, NUMPAWLS, NOTCHES, ...), which compiles
+     *  a kernel, agrees with converting them one at a time. */
+    private void checkAgainstGeneric(int numRotors, int numPawls,
+                                     String[] notches, int n) {
+        Machine bulk = machine(numRotors, numPawls, notches, new Random(7));
+        Machine single = machine(numRotors, numPawls, notches,
+                                 new Random(7));
+        Random random = new Random(11);
+        char[] text = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            text[i] = (char) ('A' + random.nextInt(26));
+        }
+        char[] expected = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            expected[i] = UPPER.toChar(single.convert(UPPER.toInt(text[i])));
+        }
+        for (int i = 0; i < n; i += 1000) {
+            bulk.convert(text, i, Math.min(n, i + 1000));
+        }
+        assertArrayEquals(expected, text);
+        int[] got = new int[numRotors - 1], want = new int[numRotors - 1];
+        bulk.getPositions(got);
+        single.getPositions(want);
+        assertArrayEquals(want, got);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkKernelCompiles() {
+        Rotor[] slots = {
+            new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)),
+            new MovingRotor("I", new Permutation(NAVALA.get("I"), UPPER),
+                            "Q"),
+            new MovingRotor("II", new Permutation(NAVALA.get("II"), UPPER),
+                            "E"),
+        };
+        SlotTables tables = new SlotTables(slots, 2);
+        assertEquals(1, tables.firstPawl());
+        assertEquals(UPPER.toInt('E'), tables.forward(1, 0));
+        assertEquals(0, tables.backward(1, UPPER.toInt('E')));
+        assertTrue(tables.notch(2, UPPER.toInt('E')));
+        assertFalse(tables.notch(2, UPPER.toInt('Q')));
+        Kernel kernel = KernelCompiler.kernel(tables, "test B I II");
+        assertNotNull(kernel);
+        int[] positions = {0, 0, 4};
+        kernel.convert(0, positions);
+        assertArrayEquals(new int[] {0, 1, 5}, positions);
+        assertSame(kernel, KernelCompiler.kernel(tables, "test B I II"));
+    }
+
+    @Test
+    public void checkNavalMatchesGeneric() {
+        checkAgainstGeneric(5, 3, new String[] {"Q", "E", "V", "J", "Z"},
+                            20000);
+    }
+
+    @Test
+    public void checkFrequentNotchesMatchGeneric() {
+        checkAgainstGeneric(8, 5, new String[] {"ABCDEFGHIJKLM", "AEIMQUY",
+                                                "", "Z"}, 20000);
+    }
+
+    @Test
+    public void checkManyRotorsMatchGeneric() {
+        checkAgainstGeneric(60, 40, new String[] {"AN", "C", "QRS"}, 10000);
+    }
+
+    @Test
+    public void checkShortSectionsCompile() {
+        Random random = new Random(5);
+        Machine m = machine(5, 3, new String[] {"KLM", "N", "O"}, random);
+        assertNull(KernelCompiler.cached(m.wiring()));
+        String[] names = {"B", "Beta", "M2", "M3", "M4"};
+        char[] text = new char[1000];
+        for (int i = 0; i < 6; i += 1) {
+            m.insertRotors(names);
+            m.setRotors("ABCD");
+            Arrays.fill(text, 'A');
+            m.convert(text, 0, text.length);
+        }
+        assertNotNull(KernelCompiler.cached(m.wiring()));
+        Machine.Order order = m.order();
+        m.insertRotors(order);
+        m.setRotors("ABCD");
+        char[] expected = new char[5];
+        for (int i = 0; i < expected.length; i += 1) {
+            expected[i] = UPPER.toChar(m.convert(0));
+        }
+        m.insertRotors(order);
+        m.setRotors("ABCD");
+        text = "AAAAA".toCharArray();
+        m.convert(text, 0, text.length);
+        assertArrayEquals(expected, text);
+    }
+
+}
@@ -0,0 +1,277 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static enigma.EnigmaException.*;
+
+/** A brute-force search of a range of a KeySpace for the settings that
+ *  best decipher a ciphertext.  Each candidate decipherment is scored by
+ *  its letter coincidences, the sum over letters of N * (N - 1) where N
+ *  is the letter's count, which is far higher for natural language than
+ *  for the near-uniform output of wrong settings.  Only the best few
+ *  results are kept, ordered by decreasing score and then by increasing
+ *  setting number, so that the results of a search do not depend on how
+ *  its range was divided.
+ *
+ *  Plugboards vary fastest in the key space, so consecutive settings
+ *  share rotor settings and differ only in plugboard.  Rather than run
+ *  the rotors again for each plugboard, I compute once per rotor setting
+ *  what the rotors alone do to each character (Machine.rotorCore), for
+ *  just the inputs the plugboards can give them, and decipher under
+ *  each plugboard from that table.  With only one plugboard there is
+ *  nothing to share, and I convert directly.  The table is my own, so a
+ *  KeySearch must be used by one thread at a time.
+ *  @author Allison Wang
+ */
+class KeySearch {
+
+    /** A search of SPACE, using M (which must have SPACE's configuration)
+     *  to decipher CIPHERTEXT, keeping the best KEEP results.  Characters
+     *  of CIPHERTEXT outside M's alphabet are ignored. */
+    KeySearch(Machine m, KeySpace space, String ciphertext, int keep) {
+        if (keep <= 0) {
+            throw error("must keep at least one result");
+        }
+        _machine = m;
+        _space = space;
+        _keep = keep;
+        Alphabet alpha = m.alphabet();
+        int[] text = new int[ciphertext.length()];
+        int n = 0;
+        for (int i = 0; i < ciphertext.length(); i += 1) {
+            char ch = Character.toUpperCase(ciphertext.charAt(i));
+            if (alpha.contains(ch)) {
+                text[n] = alpha.toInt(ch);
+                n += 1;
+            }
+        }
+        _text = new int[n];
+        System.arraycopy(text, 0, _text, 0, n);
+        _counts = new int[alpha.size()];
+        _plugboards = new Permutation[space.plugboards()];
+        _order = -1;
+        _coreSettings = -1;
+        if (_plugboards.length > 1 && (long) n * alpha.size() <= MAX_CORE) {
+            _core = new int[n * alpha.size()];
+            _inputs = inputs();
+        } else {
+            _core = null;
+            _inputs = null;
+        }
+    }
+
+    /** Return the number of results I keep. */
+    int keep() {
+        return _keep;
+    }
+
+    /** Return the best results among settings LO .. HI-1 of my key
+     *  space, best first. */
+    List<Result> search(long lo, long hi) {
+        if (lo < 0 || lo > hi || hi > _space.size()) {
+            throw error("bad search range %d .. %d", lo, hi);
+        }
+        PriorityQueue<Result> best = new PriorityQueue<>(
+            Collections.reverseOrder());
+        for (long index = lo; index < hi; index += 1) {
+            long score = score(index);
+            if (best.size() < _keep) {
+                best.add(new Result(index, score));
+            } else if (Result.compare(score, index, best.peek()) < 0) {
+                best.poll();
+                best.add(new Result(index, score));
+            }
+        }
+        ArrayList<Result> result = new ArrayList<>(best);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the coincidence score of deciphering with setting INDEX of
+     *  my key space. */
+    long score(long index) {
+        int plug = (int) (index % _plugboards.length);
+        long rest = index / _plugboards.length;
+        Permutation plugboard = plugboard(plug);
+        Arrays.fill(_counts, 0);
+        if (_core == null) {
+            setRotors(rest);
+            _machine.setPlugboard(plugboard);
+            for (int c : _text) {
+                _counts[_machine.convert(c)] += 1;
+            }
+        } else {
+            if (rest != _coreSettings) {
+                setRotors(rest);
+                _machine.rotorCore(_text.length, _inputs, _core);
+                _coreSettings = rest;
+            }
+            int size = _counts.length;
+            for (int i = 0, row = 0; i < _text.length; i += 1, row += size) {
+                int c = _text[i];
+                if (plugboard != null) {
+                    c = plugboard.permute(c);
+                }
+                c = _core[row + c];
+                if (plugboard != null) {
+                    c = plugboard.invert(c);
+                }
+                _counts[c] += 1;
+            }
+        }
+        long score = 0;
+        for (int count : _counts) {
+            score += (long) count * (count - 1);
+        }
+        return score;
+    }
+
+    /** Set _machine's rotors as for settings number REST * P .. REST * P
+     *  + P - 1 of my key space, where P is the number of plugboards. */
+    private void setRotors(long rest) {
+        long order = rest / _space.positions();
+        if (order != _order) {
+            _machine.insertRotors(_space.order(order));
+            _order = order;
+        }
+        _machine.setRotors(_space.position(rest % _space.positions()));
+    }
+
+    /** Return, for each character of _text, the distinct inputs that my
+     *  plugboards give the rotors for it. */
+    private int[][] inputs() {
+        int[][] inputs = new int[_text.length][];
+        int[] seen = new int[_counts.length];
+        Arrays.fill(seen, -1);
+        int[] found = new int[Math.min(_plugboards.length, _counts.length)];
+        for (int i = 0; i < _text.length; i += 1) {
+            int n = 0;
+            for (int plug = 0; plug < _plugboards.length; plug += 1) {
+                Permutation plugboard = plugboard(plug);
+                int x = plugboard == null ? _text[i]
+                    : plugboard.permute(_text[i]);
+                if (seen[x] != i) {
+                    seen[x] = i;
+                    found[n] = x;
+                    n += 1;
+                }
+            }
+            inputs[i] = Arrays.copyOf(found, n);
+        }
+        return inputs;
+    }
+
+    /** Return the compiled plugboard number PLUG of my key space, or null
+     *  for none. */
+    private Permutation plugboard(int plug) {
+        if (_plugboards[plug] == null) {
+            String cycles = _space.plugboard(plug);
+            if (cycles.isEmpty()) {
+                return null;
+            }
+            _plugboards[plug] = new Permutation(cycles, _machine.alphabet());
+        }
+        return _plugboards[plug];
+    }
+
+    /** Merge the results in MORE into BEST, both ordered best first,
+     *  keeping at most KEEP, and return the merged list. */
+    static List<Result> merge(List<Result> best, List<Result> more,
+                              int keep) {
+        ArrayList<Result> result = new ArrayList<>(best.size() + more.size());
+        result.addAll(best);
+        result.addAll(more);
+        Collections.sort(result);
+        return new ArrayList<>(result.subList(0, Math.min(keep,
+                                                          result.size())));
+    }
+
+    /** A scored setting. */
+    static final class Result implements Comparable<Result> {
+
+        /** Setting number INDEX, scoring SCORE. */
+        Result(long index, long score) {
+            _index = index;
+            _score = score;
+        }
+
+        /** Return my setting number. */
+        long index() {
+            return _index;
+        }
+
+        /** Return my score. */
+        long score() {
+            return _score;
+        }
+
+        /** Results compare as better (smaller) when their score is higher
+         *  or, for equal scores, their setting number is lower. */
+        @Override
+        public int compareTo(Result other) {
+            return compare(_score, _index, other);
+        }
+
+        /** Compare a result with SCORE and INDEX to OTHER. */
+        static int compare(long score, long index, Result other) {
+            if (score != other._score) {
+                return score > other._score ? -1 : 1;
+            }
+            return Long.compare(index, other._index);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Result
+                && ((Result) obj)._index == _index
+                && ((Result) obj)._score == _score;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_index) * 31 + Long.hashCode(_score);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d:%d", _index, _score);
+        }
+
+        /** Setting number. */
+        private final long _index;
+        /** Coincidence score. */
+        private final long _score;
+    }
+
+    /** Largest table of rotor substitutions I build, in entries. */
+    private static final long MAX_CORE = 1 << 22;
+
+    /** Machine used to decipher. */
+    private final Machine _machine;
+    /** Space searched. */
+    private final KeySpace _space;
+    /** Number of results kept. */
+    private final int _keep;
+    /** Ciphertext as alphabet indices. */
+    private final int[] _text;
+    /** Letter counts of the current decipherment. */
+    private final int[] _counts;
+    /** Compiled plugboards, by plugboard number, filled on demand. */
+    private final Permutation[] _plugboards;
+    /** Rotor order inserted in _machine, or -1. */
+    private long _order;
+    /** What _machine's rotors do to each character of _text, as filled
+     *  by Machine.rotorCore, or null if there is only one plugboard or
+     *  the table would be too large. */
+    private final int[] _core;
+    /** The inputs for which _core is filled, by character. */
+    private final int[][] _inputs;
+    /** Number of the rotor settings (setting number divided by the
+     *  number of plugboards) for which _core is filled, or -1. */
+    private long _coreSettings;
+
+}
@@ -0,0 +1,246 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static enigma.EnigmaException.*;
+
+/** The space of all settings of a machine: every rotor order that puts a
+ *  reflector in slot 0, non-moving rotors in the slots without pawls and
+ *  moving rotors in the slots with pawls, times every starting position,
+ *  times each of an optional list of plugboards.  Settings are numbered
+ *  from 0 to size()-1 and decoded on demand, so the space is never
+ *  materialized.
+ *  @author Allison Wang
+ */
+class KeySpace {
+
+    /** The key space of a machine with alphabet ALPHABET, NUMROTORS slots
+     *  and NUMPAWLS pawls, drawing rotors from ROTORS, and trying each of
+     *  PLUGBOARDS (cycle strings).  An empty or null PLUGBOARDS means that
+     *  no plugboard is used. */
+    KeySpace(RotorRegistry rotors, Alphabet alphabet, int numRotors,
+             int numPawls, List<String> plugboards) {
+        _reflectors = new ArrayList<>();
+        _fixed = new ArrayList<>();
+        _moving = new ArrayList<>();
+        for (Rotor r : rotors.rotors()) {
+            if (r.reflecting()) {
+                _reflectors.add(r.name());
+            } else if (r.rotates()) {
+                _moving.add(r.name());
+            } else {
+                _fixed.add(r.name());
+            }
+        }
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _numFixed = numRotors - numPawls - 1;
+        _numMoving = numPawls;
+        if (plugboards == null || plugboards.isEmpty()) {
+            _plugboards = Collections.singletonList("");
+        } else {
+            _plugboards = new ArrayList<>(plugboards);
+        }
+        try {
+            _orders = Math.multiplyExact(_reflectors.size(),
+                    Math.multiplyExact(arrangements(_fixed.size(), _numFixed),
+                            arrangements(_moving.size(), _numMoving)));
+            long positions = 1;
+            for (int i = 1; i < numRotors; i += 1) {
+                positions = Math.multiplyExact(positions, alphabet.size());
+            }
+            _positions = positions;
+            _size = Math.multiplyExact(Math.multiplyExact(_orders, positions),
+                    _plugboards.size());
+        } catch (ArithmeticException excp) {
+            throw error("key space has more than %d settings",
+                    Long.MAX_VALUE);
+        }
+    }
+
+    /** The key space of M's configuration, trying each of PLUGBOARDS. */
+    KeySpace(Machine m, List<String> plugboards) {
+        this(m.allRotors(), m.alphabet(), m.numRotors(), m.numPawls(),
+             plugboards);
+    }
+
+    /** Return the number of ordered choices of K of N items. */
+    private static long arrangements(int n, int k) {
+        long result = 1;
+        if (k > n) {
+            return 0;
+        }
+        for (int i = 0; i < k; i += 1) {
+            result = Math.multiplyExact(result, n - i);
+        }
+        return result;
+    }
+
+    /** Return the total number of settings. */
+    long size() {
+        return _size;
+    }
+
+    /** Return the number of distinct rotor orders. */
+    long orders() {
+        return _orders;
+    }
+
+    /** Return the number of starting positions per rotor order. */
+    long positions() {
+        return _positions;
+    }
+
+    /** Return the number of plugboards tried per position. */
+    int plugboards() {
+        return _plugboards.size();
+    }
+
+    /** Return the cycles of plugboard number PLUG, 0 <= PLUG <
+     *  plugboards(), which are empty for no plugboard. */
+    String plugboard(int plug) {
+        return _plugboards.get(plug);
+    }
+
+    /** Return the rotor names of order number ORDER, 0 <= ORDER <
+     *  orders(), reflector first. */
+    String[] order(long order) {
+        String[] names = new String[_numRotors];
+        long rest = order;
+        names[0] = _reflectors.get((int) (rest % _reflectors.size()));
+        rest /= _reflectors.size();
+        rest = choose(_fixed, names, 1, _numFixed, rest);
+        choose(_moving, names, 1 + _numFixed, _numMoving, rest);
+        return names;
+    }
+
+    /** Fill NAMES[START .. START+K-1] with an arrangement of K of
+     *  the names in FROM selected by the mixed-radix digits of CODE, and
+     *  return the remaining high-order part of CODE. */
+    private static long choose(List<String> from, String[] names,
+                               int start, int k, long code) {
+        ArrayList<String> left = new ArrayList<>(from);
+        long rest = code;
+        for (int i = 0; i < k; i += 1) {
+            int n = left.size();
+            names[start + i] = left.remove((int) (rest % n));
+            rest /= n;
+        }
+        return rest;
+    }
+
+    /** Return starting position number POSITION, 0 <= POSITION <
+     *  positions(), as a string of numRotors - 1 characters. */
+    String position(long position) {
+        char[] chars = new char[_numRotors - 1];
+        long rest = position;
+        for (int i = chars.length - 1; i >= 0; i -= 1) {
+            chars[i] = _alphabet.toChar((int) (rest % _alphabet.size()));
+            rest /= _alphabet.size();
+        }
+        return new String(chars);
+    }
+
+    /** Return setting number INDEX, 0 <= INDEX < size().  Plugboards
+     *  vary fastest, then positions, then rotor orders. */
+    MachineSettings get(long index) {
+        if (index < 0 || index >= _size) {
+            throw error("setting %d out of range", index);
+        }
+        int plug = (int) (index % _plugboards.size());
+        long rest = index / _plugboards.size();
+        return new MachineSettings(order(rest / _positions),
+                                   position(rest % _positions),
+                                   _plugboards.get(plug));
+    }
+
+    /** Return a spliterator over all settings. */
+    Spliterator<MachineSettings> spliterator() {
+        return new Settings(0, _size);
+    }
+
+    /** Return a sequential stream of all settings; call parallel() on
+     *  it to search the space on all cores. */
+    Stream<MachineSettings> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /** A spliterator over the settings numbered in a half-open range,
+     *  which splits at the midpoint so that parallel streams divide the
+     *  space evenly. */
+    private class Settings implements Spliterator<MachineSettings> {
+
+        /** Settings numbered NEXT .. END-1. */
+        Settings(long next, long end) {
+            _next = next;
+            _end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super MachineSettings> action) {
+            if (_next >= _end) {
+                return false;
+            }
+            action.accept(get(_next));
+            _next += 1;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(
+                Consumer<? super MachineSettings> action) {
+            for (; _next < _end; _next += 1) {
+                action.accept(get(_next));
+            }
+        }
+
+        @Override
+        public Spliterator<MachineSettings> trySplit() {
+            long n = _end - _next;
+            if (n < 2) {
+                return null;
+            }
+            long mid = _next + n / 2;
+            Settings prefix = new Settings(_next, mid);
+            _next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _end - _next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL
+                | IMMUTABLE;
+        }
+
+        /** Number of the next setting to report. */
+        private long _next;
+        /** One past the number of the last setting to report. */
+        private final long _end;
+    }
+
+    /** Common alphabet of the rotors. */
+    private final Alphabet _alphabet;
+    /** Names of available reflectors, non-moving rotors and moving
+     *  rotors. */
+    private final ArrayList<String> _reflectors, _fixed, _moving;
+    /** Plugboards to try, "" meaning none. */
+    private final List<String> _plugboards;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of slots for non-moving and for moving rotors. */
+    private final int _numFixed, _numMoving;
+    /** Number of rotor orders, of positions per order, and of settings. */
+    private final long _orders, _positions, _size;
+
+}
@@ -0,0 +1,105 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySpace class.
+ *  @author Allison Wang
+ */
+public class KeySpaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A registry of two reflectors, two non-moving rotors and three
+     *  moving rotors over the alphabet A-D. */
+    private RotorRegistry smallRotors() {
+        Alphabet ad = new CharacterRange('A', 'D');
+        RotorRegistry rotors = new RotorRegistry();
+        rotors.add(new Reflector("R1", new Permutation("(AC) (BD)", ad)));
+        rotors.add(new Reflector("R2", new Permutation("(AB) (CD)", ad)));
+        rotors.add(new FixedRotor("F1", new Permutation("(ABCD)", ad)));
+        rotors.add(new FixedRotor("F2", new Permutation("(AD)", ad)));
+        rotors.add(new MovingRotor("M1", new Permutation("(ABC)", ad), "A"));
+        rotors.add(new MovingRotor("M2", new Permutation("(BCD)", ad), "B"));
+        rotors.add(new MovingRotor("M3", new Permutation("(AD)", ad), "C"));
+        return rotors;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSize() {
+        KeySpace space = new KeySpace(smallRotors(),
+                new CharacterRange('A', 'D'), 4, 2,
+                Arrays.asList("(AB)", "(CD)"));
+        assertEquals(2 * 2 * 3 * 2, space.orders());
+        assertEquals(4 * 4 * 4, space.positions());
+        assertEquals(space.orders() * space.positions() * 2, space.size());
+    }
+
+    @Test
+    public void checkDistinctAndLegal() {
+        KeySpace space = new KeySpace(smallRotors(),
+                new CharacterRange('A', 'D'), 4, 2, null);
+        long distinct = space.stream().map(MachineSettings::toString)
+            .distinct().count();
+        assertEquals(space.size(), distinct);
+        for (long i = 0; i < space.size(); i += 1) {
+            String[] names = space.get(i).rotors();
+            assertTrue(names[0].startsWith("R"));
+            assertTrue(names[1].startsWith("F"));
+            assertTrue(names[2].startsWith("M"));
+            assertTrue(names[3].startsWith("M"));
+        }
+    }
+
+    @Test
+    public void checkParallelMatchesSequential() {
+        KeySpace space = new KeySpace(smallRotors(),
+                new CharacterRange('A', 'D'), 4, 2,
+                Arrays.asList("(AB)", "(CD)", "(AC)"));
+        assertEquals(space.stream().map(MachineSettings::toString)
+                     .collect(Collectors.toList()),
+                     space.stream().parallel()
+                     .map(MachineSettings::toString)
+                     .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void checkEvenSplit() {
+        KeySpace space = new KeySpace(smallRotors(),
+                new CharacterRange('A', 'D'), 4, 2, null);
+        Spliterator<MachineSettings> rest = space.spliterator();
+        Spliterator<MachineSettings> prefix = rest.trySplit();
+        assertTrue(Math.abs(prefix.estimateSize() - rest.estimateSize())
+                   <= 1);
+        assertEquals(space.size(),
+                     prefix.estimateSize() + rest.estimateSize());
+    }
+
+    @Test
+    public void checkSettingsApply() {
+        KeySpace space = new KeySpace(smallRotors(),
+                new CharacterRange('A', 'D'), 4, 2,
+                Arrays.asList("(AB)"));
+        MachineSettings s = space.get(space.size() - 1);
+        Machine m = new Machine(new CharacterRange('A', 'D'), 4, 2,
+                                smallRotors());
+        s.apply(m);
+        String encoded = m.convert("ABCDDCBA");
+        s.apply(m);
+        assertEquals("ABCDDCBA", m.convert(encoded));
+    }
+}
@@ -0,0 +1,104 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import static enigma.EnigmaException.*;
+
+/** A map of at most a fixed number of entries, and optionally of at most
+ *  a fixed total weight of values, that, when full, evicts the entries
+ *  used least recently.  It counts hits, misses and evictions.  It is
+ *  not synchronized.
+ *  @author Allison Wang
+ */
+class LruCache<K, V> {
+
+    /** A cache of at most CAPACITY entries. */
+    LruCache(int capacity) {
+        this(capacity, Long.MAX_VALUE, value -> 0);
+    }
+
+    /** A cache of at most CAPACITY entries whose values weigh at most
+     *  MAXWEIGHT in all, as measured by WEIGHER.  A value heavier than
+     *  MAXWEIGHT by itself is not kept. */
+    LruCache(int capacity, long maxWeight, ToLongFunction<V> weigher) {
+        if (capacity <= 0 || maxWeight <= 0) {
+            throw error("cache capacity must be positive");
+        }
+        _capacity = capacity;
+        _maxWeight = maxWeight;
+        _weigher = weigher;
+        _map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Return the value cached for KEY, or null, counting a hit or a
+     *  miss. */
+    V get(K key) {
+        V value = _map.get(key);
+        if (value == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return value;
+    }
+
+    /** Cache VALUE for KEY, evicting the least recently used entries
+     *  while I am over capacity or weight. */
+    void put(K key, V value) {
+        V old = _map.put(key, value);
+        if (old != null) {
+            _weight -= _weigher.applyAsLong(old);
+        }
+        _weight += _weigher.applyAsLong(value);
+        Iterator<V> eldest = _map.values().iterator();
+        while (_map.size() > _capacity || _weight > _maxWeight) {
+            _weight -= _weigher.applyAsLong(eldest.next());
+            eldest.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Return the number of entries cached. */
+    int size() {
+        return _map.size();
+    }
+
+    /** Return the total weight of the values cached. */
+    long weight() {
+        return _weight;
+    }
+
+    /** Return the number of lookups that found an entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that found none. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the number of entries evicted to make room. */
+    long evictions() {
+        return _evictions;
+    }
+
+    /** Maximum number of entries. */
+    private final int _capacity;
+    /** Maximum total weight of values. */
+    private final long _maxWeight;
+    /** Weighs values. */
+    private final ToLongFunction<V> _weigher;
+    /** Entries, in order of use. */
+    private final LinkedHashMap<K, V> _map;
+    /** Total weight of the values in _map. */
+    private long _weight;
+    /** Counts of lookups. */
+    private long _hits, _misses;
+    /** Number of entries evicted. */
+    private long _evictions;
+
+}
@@ -2,6 +2,9 @@ package enigma;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+
+import static enigma.EnigmaException.*;
 
 /**
  * Class that represents a complete enigma machine.
@@ -17,13 +20,22 @@ class Machine {
      */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorRegistry(allRotors));
+    }
+
+    /**
+     * A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     * and 0 <= PAWLS < NUMROTORS pawls, drawing its rotors from ALLROTORS.
+     */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorRegistry allRotors) {
         _alphabet = alpha;
         assert numRotors > 1;
         _numRotors = numRotors;
         assert pawls >= 0 && pawls < numRotors;
-        Rotor[] all;
-        all = allRotors.toArray(new Rotor[allRotors.size()]);
-        _allRotors = all;
+        _numPawls = pawls;
+        _allRotors = allRotors;
+        _engine = Engines.preferred();
     }
 
     /**
@@ -40,31 +52,97 @@ class Machine {
         return _numPawls;
     }
 
+    /**
+     * Return my alphabet.
+     */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /**
+     * Return all my available rotors.
+     */
+    RotorRegistry allRotors() {
+        return _allRotors;
+    }
+
     /**
      * Set my rotor slots to the rotors named ROTORS from my set of
      * available rotors (ROTORS[0] names the reflector).
      * Initially, all rotors are set at their 0 setting.
      */
     void insertRotors(String[] rotors) {
-        _rotorList = new ArrayList<>();
-        ArrayList<String> names = new ArrayList<>();
-        for (String rotor : rotors) {
-            for (Rotor curr : _allRotors) {
-                String name = curr.name();
-                if (rotor.equals(name)) {
-                    curr.set(0);
-                    _rotorList.add(curr);
-                    if (names.contains(rotor)) {
-                        throw new EnigmaException("Multiple"
-                                + "rotors of the same name");
-                    } else {
-                        names.add(rotor);
-                    }
-                }
+        _rotorList = new ArrayList<>(rotors.length);
+        HashSet<String> names = new HashSet<>();
+        for (String name : rotors) {
+            Rotor curr = _allRotors.get(name);
+            if (curr == null) {
+                throw error("A wrong rotor name was passed: %s", name);
             }
+            if (!names.add(name)) {
+                throw new EnigmaException("Multiple "
+                        + "rotors of the same name");
+            }
+            curr.set(0);
+            _rotorList.add(curr);
         }
-        if (names.size() != _rotorList.size()) {
-            throw new EnigmaException("A wrong rotor name was passed");
+        _slots = _rotorList.toArray(new Rotor[0]);
+        _stepper = new Stepper(_slots, _numPawls);
+        _wiring = null;
+        inserted();
+    }
+
+    /**
+     * Return the rotors now inserted in me, resolved, so that
+     * insertRotors(Order) can insert them again without looking them up
+     * or checking them.
+     */
+    Order order() {
+        return new Order(this, _rotorList, _slots, _stepper, wiring());
+    }
+
+    /**
+     * Insert the rotors of ORDER, which must have come from my order(),
+     * at their 0 settings, as insertRotors(String[]) would.
+     */
+    void insertRotors(Order order) {
+        if (order.machine != this) {
+            throw error("rotor order belongs to another machine");
+        }
+        for (Rotor r : order.slots) {
+            r.set(0);
+        }
+        _rotorList = order.rotorList;
+        _slots = order.slots;
+        _stepper = order.stepper;
+        _stepper.sync();
+        _wiring = order.wiring;
+        inserted();
+    }
+
+    /**
+     * Prepare to convert with the rotors just inserted in _slots.
+     */
+    private void inserted() {
+        _kernel = null;
+        if (_engine.supports(_alphabet.size(), _slots.length)) {
+            _kernel = _engine.cachedKernel(wiring());
+        }
+        if (_kernel != null) {
+            _untilKernel = 0;
+        } else if (!wiring().equals(_countedWiring)) {
+            _countedWiring = wiring();
+            _untilKernel = KERNEL_THRESHOLD;
+        }
+        if (_kernelPositions == null
+            || _kernelPositions.length != _slots.length) {
+            _kernelPositions = new int[_slots.length];
+            _kernelBefore = new int[_slots.length];
+            _kernelMoved = new int[_slots.length];
+        }
+        _stepper.trace(_trace);
+        if (_trace != null) {
+            _trace.key(_slots);
         }
     }
 
@@ -87,6 +165,98 @@ class Machine {
                 }
             }
         }
+        _stepper.sync();
+        if (_trace != null) {
+            _trace.key(_slots);
+        }
+    }
+
+    /**
+     * Set the rotor in each slot I > 0 to setting POSITIONS[I - 1], as
+     * setRotors does with the characters of its argument.
+     */
+    void setPositions(int[] positions) {
+        for (int i = 1; i < _rotorList.size(); i++) {
+            Rotor r = _rotorList.get(i);
+            if (!r.reflecting()) {
+                r.set(positions[i - 1]);
+            }
+        }
+        _stepper.sync();
+        if (_trace != null) {
+            _trace.key(_slots);
+        }
+    }
+
+    /**
+     * Store the setting of the rotor in each slot I > 0 in
+     * POSITIONS[I - 1].
+     */
+    void getPositions(int[] positions) {
+        for (int i = 1; i < _rotorList.size(); i++) {
+            positions[i - 1] = _rotorList.get(i).setting();
+        }
+    }
+
+    /**
+     * Return a description of the rotors now inserted in me: my
+     * alphabet's characters (as Alphabet.runs()), and the rotors' kinds,
+     * notches and wirings, in slot order.  Machines whose rotors
+     * have equal descriptions and equal settings, and whose plugboards
+     * are equal, convert any message identically, even if their
+     * configurations differ.  The result is the same object until
+     * rotors are next inserted.
+     */
+    String wiring() {
+        if (_wiring == null) {
+            StringBuilder wiring = new StringBuilder();
+            String runs = _alphabet.runs();
+            wiring.append(runs.length()).append(':').append(runs)
+                .append(' ').append(_numPawls);
+            for (Rotor r : _slots) {
+                wiring.append(r.reflecting() ? " R" : r.rotates() ? " M"
+                              : " N")
+                    .append(r.notches()).append(' ')
+                    .append(r.permutation().cycles());
+            }
+            _wiring = wiring.toString();
+        }
+        return _wiring;
+    }
+
+    /**
+     * Return a new machine like me, with the same alphabet, slots and
+     * pawls, whose rotors are copies of mine that share their
+     * permutations.  No rotors are inserted in it.
+     */
+    Machine copy() {
+        Machine result = new Machine(_alphabet, _numRotors, _numPawls,
+                                     _allRotors.copy());
+        result._engine = _engine;
+        return result;
+    }
+
+    /**
+     * Return the engine I convert with.
+     */
+    Engine engine() {
+        return _engine;
+    }
+
+    /**
+     * Convert with ENGINE from now on.
+     */
+    void setEngine(Engine engine) {
+        _engine = engine;
+        _kernel = null;
+        _untilKernel = KERNEL_THRESHOLD;
+    }
+
+    /**
+     * Return my plugboard, or null if I have none.
+     */
+    Permutation plugboard() {
+        return _plugboard;
     }
 
     /**
@@ -94,6 +264,23 @@ class Machine {
      */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        if (_trace != null) {
+            _trace.plugboard(plugboard);
+        }
+    }
+
+    /**
+     * Record the settings under which I convert each character in TRACE
+     * from now on, starting with my current rotors and plugboard, if
+     * any.
+     */
+    void trace(TraceWriter trace) {
+        _trace = trace;
+        if (_stepper != null) {
+            _stepper.trace(trace);
+            trace.key(_slots);
+        }
+        trace.plugboard(_plugboard);
     }
 
     /**
@@ -102,40 +289,12 @@ class Machine {
      * the machine.
      */
     int convert(int c) {
-        ArrayList<Boolean> notched = new ArrayList<>(numRotors());
-        Rotor secLast = (_rotorList.get(numRotors() - 1));
-        if (!secLast.atNotch()) {
-            secLast.advance();
-        } else {
-            int index = 0;
-            for (Rotor isNotch : _rotorList) {
-                if (isNotch.atNotch()) {
-                    notched.add(index - 1, true);
-                    notched.add(index, true);
-                } else {
-                    notched.add(index, false);
-                }
-                index++;
-            }
-            for (int i = 0; i < numRotors(); i++) {
-                if (notched.get(i)) {
-                    _rotorList.get(i).advance();
-                }
-            }
-        }
+        _stepper.step();
         int in = c % _alphabet.size();
         if (_plugboard != null) {
             in = _plugboard.permute(in);
         }
-        for (int size = _rotorList.size() - 1; size > 0; size--) {
-            Rotor current = _rotorList.get(size);
-            in = current.convertForward(in);
-        }
-        int out = _rotorList.get(0).convertForward(in);
-        for (int first = 1; first < _rotorList.size(); first++) {
-            Rotor cur = _rotorList.get(first);
-            out = cur.convertBackward(out);
-        }
+        int out = throughRotors(in);
         if (_plugboard != null) {
             out = _plugboard.invert(out);
         }
@@ -147,18 +306,210 @@ class Machine {
      * the rotors accordingly.
      */
     String convert(String msg) {
-        String converted = "";
-        for (int i = 0; i < msg.length(); i++) {
-            char character = Character.toUpperCase(msg.charAt(i));
+        char[] chars = msg.toCharArray();
+        return new String(chars, 0, convert(chars, 0, chars.length));
+    }
+
+    /**
+     * Converts CHARS[START .. END-1] in place as for convert(String),
+     * moving the results down over any blanks, and returns the index just
+     * past the last converted character.
+     */
+    int convert(char[] chars, int start, int end) {
+        if (_kernel == null && _untilKernel > 0) {
+            _untilKernel -= end - start;
+            if (_untilKernel <= 0) {
+                _kernel = kernel();
+            }
+        }
+        if (_kernel != null) {
+            return convertWithKernel(chars, start, end);
+        }
+        int out = start;
+        for (int i = start; i < end; i++) {
+            char character = Character.toUpperCase(chars[i]);
             if (character != ' ') {
                 int temp = _alphabet.toInt(character);
-                char convert = _alphabet.toChar(convert(temp));
-                converted += Character.toString(convert);
+                chars[out] = _alphabet.toChar(convert(temp));
+                out++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Fill TABLE[I * S + X], where S is my alphabet size, with the
+     * conversion of X by my rotors alone (everything between the two
+     * applications of the plugboard in convert(int)) for character I,
+     * for 0 <= I < N, advancing the rotors N steps.  If INPUTS is null,
+     * every X is filled; otherwise, only those in INPUTS[I].  Since the
+     * rotors do not depend on the plugboard, one such table serves every
+     * plugboard tried from the same rotor settings: each converts
+     * character I with a lookup in the plugboard, one in TABLE, and one
+     * in the plugboard's inverse.
+     */
+    void rotorCore(int n, int[][] inputs, int[] table) {
+        int size = _alphabet.size();
+        for (int i = 0, row = 0; i < n; i++, row += size) {
+            _stepper.step();
+            if (inputs == null) {
+                for (int x = 0; x < size; x++) {
+                    table[row + x] = throughRotors(x);
+                }
+            } else {
+                for (int x : inputs[i]) {
+                    table[row + x] = throughRotors(x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the conversion of IN by my rotors at their current
+     * settings, from the rightmost through the reflector and back.
+     */
+    private int throughRotors(int in) {
+        for (int size = _slots.length - 1; size > 0; size--) {
+            in = _slots[size].convertForward(in);
+        }
+        int out = _slots[0].convertForward(in);
+        for (int first = 1; first < _slots.length; first++) {
+            out = _slots[first].convertBackward(out);
+        }
+        return out;
+    }
+
+    /**
+     * Return my engine's kernel for my inserted rotors, or null if it
+     * has none or does not support my configuration.
+     */
+    private Kernel kernel() {
+        if (!_engine.supports(_alphabet.size(), _slots.length)) {
+            return null;
+        }
+        return _engine.kernel(new SlotTables(_slots, _numPawls), wiring());
+    }
+
+    /**
+     * Converts CHARS[START .. END-1] as for convert(char[], int, int),
+     * using _kernel.
+     */
+    private int convertWithKernel(char[] chars, int start, int end) {
+        int[] positions = _kernelPositions;
+        for (int i = 0; i < _slots.length; i++) {
+            positions[i] = _slots[i].setting();
+        }
+        Kernel kernel = _kernel;
+        Permutation plugboard = _plugboard;
+        TraceWriter trace = _trace;
+        if (trace != null) {
+            System.arraycopy(positions, 0, _kernelBefore, 0, _slots.length);
+        }
+        int out = start;
+        try {
+            for (int i = start; i < end; i++) {
+                char character = Character.toUpperCase(chars[i]);
+                if (character != ' ') {
+                    int c = _alphabet.toInt(character);
+                    if (plugboard != null) {
+                        c = plugboard.permute(c);
+                    }
+                    c = kernel.convert(c, positions);
+                    if (trace != null) {
+                        recordKernelStep(trace);
+                    }
+                    if (plugboard != null) {
+                        c = plugboard.invert(c);
+                    }
+                    chars[out] = _alphabet.toChar(c);
+                    out++;
+                }
+            }
+        } finally {
+            for (int i = 0; i < _slots.length; i++) {
+                _slots[i].set(positions[i]);
             }
+            _stepper.sync();
         }
-        return converted;
+        return out;
     }
 
+    /**
+     * A rotor order resolved by a machine, to be inserted again.
+     */
+    static final class Order {
+
+        /**
+         * The order of MACHINE whose rotors are ROTORLIST, also SLOTS,
+         * advanced by STEPPER and described by WIRING.
+         */
+        private Order(Machine machine, ArrayList<Rotor> rotorList,
+                      Rotor[] slots, Stepper stepper, String wiring) {
+            this.machine = machine;
+            this.rotorList = rotorList;
+            this.slots = slots;
+            this.stepper = stepper;
+            this.wiring = wiring;
+        }
+
+        /**
+         * Machine whose rotors these are.
+         */
+        private final Machine machine;
+        /**
+         * The rotors, by slot.
+         */
+        private final ArrayList<Rotor> rotorList;
+        /**
+         * The rotors, by slot.
+         */
+        private final Rotor[] slots;
+        /**
+         * Advances the rotors.
+         */
+        private final Stepper stepper;
+        /**
+         * Value of wiring() for the rotors.
+         */
+        private final String wiring;
+    }
+
+    /**
+     * Record in TRACE the rotors moved by the last step of _kernel,
+     * which are those whose settings in _kernelPositions differ from
+     * _kernelBefore, and update _kernelBefore.
+     */
+    private void recordKernelStep(TraceWriter trace) {
+        int[] positions = _kernelPositions, before = _kernelBefore;
+        int last = positions.length - 1;
+        int k = 0;
+        for (int i = 1; i < last; i++) {
+            if (positions[i] != before[i]) {
+                before[i] = positions[i];
+                _kernelMoved[k] = i;
+                k++;
+            }
+        }
+        boolean lastMoved = positions[last] != before[last];
+        before[last] = positions[last];
+        if (k == 0 && lastMoved) {
+            trace.stepLast();
+        } else {
+            if (lastMoved) {
+                _kernelMoved[k] = last;
+                k++;
+            }
+            trace.step(_kernelMoved, k);
+        }
+    }
+
+    /**
+     * Number of characters converted with one rotor order before a
+     * kernel is made for it, unless its engine already has one.  The
+     * count carries over from one insertion of the rotors to the next.
+     */
+    private static final int KERNEL_THRESHOLD = 1 << 12;
+
     /**
      * Common alphabet of my rotors.
      */
@@ -175,13 +526,59 @@ class Machine {
     /**
      * All my available rotors.
      */
-    private Rotor[] _allRotors;
+    private RotorRegistry _allRotors;
     /**
      * My current array of rotors.
      */
     private ArrayList<Rotor> _rotorList;
+    /**
+     * My rotors, by slot.
+     */
+    private Rotor[] _slots;
+    /**
+     * Advances my rotors.
+     */
+    private Stepper _stepper;
     /**
      * My plugboard.
      */
     private Permutation _plugboard;
+    /**
+     * Description of my inserted rotors, or null if not yet computed.
+     */
+    private String _wiring;
+    /**
+     * Supplies my kernels.
+     */
+    private Engine _engine;
+    /**
+     * Kernel for my inserted rotors, or null.
+     */
+    private Kernel _kernel;
+    /**
+     * Characters still to be converted before compiling a kernel.
+     */
+    private long _untilKernel;
+    /**
+     * The wiring of the rotors for which _untilKernel counts down, which
+     * carries over when the same rotors are inserted again.
+     */
+    private String _countedWiring;
+    /**
+     * Rotor settings, by slot, while converting with _kernel.
+     */
+    private int[] _kernelPositions;
+    /**
+     * Rotor settings, by slot, before the last step of _kernel, while
+     * traced.
+     */
+    private int[] _kernelBefore;
+    /**
+     * Slots moved by the last step of _kernel, while traced.
+     */
+    private int[] _kernelMoved;
+    /**
+     * Records my settings as I convert, or null.
+     */
+    private TraceWriter _trace;
 }
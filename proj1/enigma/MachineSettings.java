@@ -0,0 +1,66 @@
+package enigma;
+
+/** An immutable choice of rotors, rotor positions, and plugboard for a
+ *  machine: the information carried by one "*" line of the input.
+ *  @author Allison Wang
+ */
+class MachineSettings {
+
+    /** Settings placing the rotors named ROTORS (ROTORS[0] names the
+     *  reflector) at the positions given by POSITIONS, one character for
+     *  each non-reflector rotor, with the plugboard given in cycle notation
+     *  by PLUGBOARD.  An empty or null PLUGBOARD means no plugboard. */
+    MachineSettings(String[] rotors, String positions, String plugboard) {
+        _rotors = rotors.clone();
+        _positions = positions;
+        _plugboard = plugboard == null ? "" : plugboard;
+    }
+
+    /** Return the names of my rotors, reflector first. */
+    String[] rotors() {
+        return _rotors.clone();
+    }
+
+    /** Return my rotor positions, leftmost non-reflector rotor first. */
+    String positions() {
+        return _positions;
+    }
+
+    /** Return my plugboard cycles, or "" if there is no plugboard. */
+    String plugboard() {
+        return _plugboard;
+    }
+
+    /** Insert my rotors into M, set them, and install my plugboard. */
+    void apply(Machine m) {
+        m.insertRotors(_rotors);
+        m.setRotors(_positions);
+        if (_plugboard.isEmpty()) {
+            m.setPlugboard(null);
+        } else {
+            m.setPlugboard(new Permutation(_plugboard, m.alphabet()));
+        }
+    }
+
+    /** Returns these settings as an input settings line. */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder("*");
+        for (String rotor : _rotors) {
+            line.append(' ').append(rotor);
+        }
+        line.append(' ').append(_positions);
+        if (!_plugboard.isEmpty()) {
+            line.append(' ').append(_plugboard);
+        }
+        return line.toString();
+    }
+
+    /** Rotor names, reflector first. */
+    private final String[] _rotors;
+    /** Initial rotor positions. */
+    private final String _positions;
+    /** Plugboard cycles, possibly empty. */
+    private final String _plugboard;
+
+}
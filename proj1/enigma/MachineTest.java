@@ -137,4 +137,163 @@ public class MachineTest {
         Assert.assertEquals("AAAAA", getSetting(UPPER, completeRotors));
         Assert.assertEquals("IHBDQQMTQZ", tester.convert("Hello World"));
     }
+
+    /** Tests that rotors are found by name and misuses are reported. */
+    @Test
+    public void testInsertRotorsByName() {
+        Rotor b = makeReflector("B", NAVALA);
+        Rotor beta = makeFixedRotor("Beta", NAVALA);
+        Rotor three = makeMovingRotor("III", NAVALA, "V");
+        Machine tester = new Machine(UPPER, 3, 1,
+                new ArrayList<>(Arrays.asList(b, beta, three)));
+        tester.insertRotors(new String[] {"B", "Beta", "III"});
+        tester.setRotors("AA");
+        String encoded = tester.convert("HELLOWORLD");
+        tester.insertRotors(new String[] {"B", "Beta", "III"});
+        tester.setRotors("AA");
+        Assert.assertEquals("HELLOWORLD", tester.convert(encoded));
+    }
+
+    /** Tests that an unknown rotor name is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testInsertUnknownRotor() {
+        Machine tester = new Machine(UPPER, 2, 1,
+                new ArrayList<>(Arrays.asList(makeReflector("B", NAVALA),
+                        makeMovingRotor("I", NAVALA, "Q"))));
+        tester.insertRotors(new String[] {"B", "II"});
+    }
+
+    /** Tests that rotor names are case-sensitive, so that a rotor named
+     *  in the wrong case is rejected rather than left out. */
+    @Test(expected = EnigmaException.class)
+    public void testInsertMiscasedRotor() {
+        Machine tester = new Machine(UPPER, 3, 1,
+                new ArrayList<>(Arrays.asList(makeReflector("B", NAVALA),
+                        makeFixedRotor("Beta", NAVALA),
+                        makeMovingRotor("I", NAVALA, "Q"))));
+        tester.insertRotors(new String[] {"B", "BETA", "I"});
+    }
+
+    /** Tests that the same rotor cannot fill two slots. */
+    @Test(expected = EnigmaException.class)
+    public void testInsertDuplicateRotor() {
+        Machine tester = new Machine(UPPER, 3, 1,
+                new ArrayList<>(Arrays.asList(makeReflector("B", NAVALA),
+                        makeMovingRotor("I", NAVALA, "Q"))));
+        tester.insertRotors(new String[] {"B", "I", "I"});
+    }
+
+    /** Tests the double step of the middle rotor of three. */
+    @Test
+    public void testNavalDoubleStep() {
+        Rotor[] slots = {makeReflector("B", NAVALA),
+                         makeFixedRotor("Beta", NAVALA),
+                         makeMovingRotor("I", NAVALA, "Q"),
+                         makeMovingRotor("II", NAVALA, "E"),
+                         makeMovingRotor("III", NAVALA, "V")};
+        Machine tester = new Machine(UPPER, 5, 3,
+                new ArrayList<>(Arrays.asList(slots)));
+        tester.insertRotors(new String[] {"B", "Beta", "I", "II", "III"});
+        tester.setRotors("AADU");
+        String[] expected = {"AADV", "AAEW", "ABFX", "ABFY"};
+        for (String setting : expected) {
+            tester.convert(0);
+            Assert.assertEquals(setting,
+                                getSetting(UPPER, slots).substring(1));
+        }
+    }
+
+    /** Tests that only the rotors with pawls move, however many. */
+    @Test
+    public void testManyRotorsHonorPawls() {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(makeReflector("B", NAVALA));
+        String[] names = new String[41];
+        names[0] = "B";
+        for (int i = 1; i < names.length; i += 1) {
+            names[i] = "R" + i;
+            all.add(new MovingRotor(names[i],
+                    new Permutation(NAVALA.get("I"), UPPER), "Z"));
+        }
+        Machine tester = new Machine(UPPER, 41, 30, all);
+        tester.insertRotors(names);
+        char[] setting = new char[40];
+        Arrays.fill(setting, 'Z');
+        tester.setRotors(new String(setting));
+        tester.convert(0);
+        int[] positions = new int[40];
+        tester.getPositions(positions);
+        for (int i = 0; i < 40; i += 1) {
+            Assert.assertEquals(i < 10 ? 25 : 0, positions[i]);
+        }
+        tester.convert(0);
+        tester.getPositions(positions);
+        Assert.assertEquals(1, positions[39]);
+        Assert.assertEquals(0, positions[10]);
+    }
+
+    /** Tests that reinserting a resolved rotor order resets the rotors
+     *  and converts as inserting them by name does. */
+    @Test
+    public void testReinsertOrder() {
+        Rotor[] slots = {makeReflector("B", NAVALA),
+                         makeFixedRotor("Beta", NAVALA),
+                         makeMovingRotor("I", NAVALA, "Q"),
+                         makeMovingRotor("II", NAVALA, "E"),
+                         makeMovingRotor("III", NAVALA, "V")};
+        Machine tester = new Machine(UPPER, 5, 3,
+                new ArrayList<>(Arrays.asList(slots)));
+        tester.insertRotors(new String[] {"B", "Beta", "I", "II", "III"});
+        Machine.Order order = tester.order();
+        tester.setRotors("AXLE");
+        String expected = tester.convert("HELLOWORLD");
+        tester.insertRotors(new String[] {"B", "Beta", "III", "II", "I"});
+        tester.convert("ABC");
+        tester.insertRotors(order);
+        Assert.assertEquals("AAAA", getSetting(UPPER, slots).substring(1));
+        tester.setRotors("AXLE");
+        Assert.assertEquals(expected, tester.convert("HELLOWORLD"));
+    }
+
+    /** Tests that the rotor core agrees with converting each character
+     *  under a plugboard, and fills only the inputs asked for. */
+    @Test
+    public void testRotorCore() {
+        Rotor[] slots = {makeReflector("B", NAVALA),
+                         makeFixedRotor("Beta", NAVALA),
+                         makeMovingRotor("I", NAVALA, "Q"),
+                         makeMovingRotor("II", NAVALA, "E"),
+                         makeMovingRotor("III", NAVALA, "V")};
+        String[] names = {"B", "Beta", "I", "II", "III"};
+        Machine core = new Machine(UPPER, 5, 3,
+                new ArrayList<>(Arrays.asList(slots)));
+        core.insertRotors(names);
+        core.setRotors("ADDT");
+        int n = 700;
+        int[] table = new int[n * 26];
+        core.rotorCore(n, null, table);
+        int[][] inputs = new int[n][];
+        for (int i = 0; i < n; i += 1) {
+            inputs[i] = new int[] {i % 26};
+        }
+        int[] partial = new int[n * 26];
+        Arrays.fill(partial, -1);
+        core.setRotors("ADDT");
+        core.rotorCore(n, inputs, partial);
+
+        Permutation plugboard = new Permutation("(AQ) (EP) (TZ)", UPPER);
+        Machine direct = core.copy();
+        direct.insertRotors(names);
+        direct.setRotors("ADDT");
+        direct.setPlugboard(plugboard);
+        for (int i = 0; i < n; i += 1) {
+            int c = (i * 7) % 26;
+            int viaCore = plugboard.invert(
+                table[i * 26 + plugboard.permute(c)]);
+            Assert.assertEquals(direct.convert(c), viaCore);
+            Assert.assertEquals(table[i * 26 + i % 26],
+                                partial[i * 26 + i % 26]);
+            Assert.assertEquals(-1, partial[i * 26 + (i + 1) % 26]);
+        }
+    }
 }
@@ -0,0 +1,316 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** End-to-end benchmark and regression gate.  Generates random
+ *  configurations, settings and messages, checks that Machine produces
+ *  exactly the output of ReferenceMachine, then measures Machine's
+ *  throughput and allocation per character and compares them with a
+ *  stored baseline.
+ *  @author Allison Wang
+ */
+public final class MacroBenchmark {
+
+    /** Run the benchmark as specified by ARGS:
+     *      [--record] [--seed=N] [--chars=N] [--tolerance=F] BASELINE
+     *  With --record, the measurements are written to the properties file
+     *  BASELINE.  Otherwise they are compared with it, and the program
+     *  exits with code 1 if output differs from the reference, if
+     *  throughput drops, or if allocation rises, by more than the
+     *  tolerance (a fraction, default 0.2). */
+    public static void main(String... args) {
+        try {
+            new MacroBenchmark(args).run();
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A benchmark configured by ARGS (see main). */
+    MacroBenchmark(String[] args) {
+        long seed = DEFAULT_SEED;
+        for (String arg : args) {
+            if (arg.equals("--record")) {
+                _record = true;
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring(7));
+            } else if (arg.startsWith("--chars=")) {
+                _chars = Integer.parseInt(arg.substring(8));
+            } else if (arg.startsWith("--tolerance=")) {
+                _tolerance = Double.parseDouble(arg.substring(12));
+            } else if (arg.startsWith("--") || _baseline != null) {
+                throw error("usage: MacroBenchmark [--record] [--seed=N] "
+                            + "[--chars=N] [--tolerance=F] BASELINE");
+            } else {
+                _baseline = new File(arg);
+            }
+        }
+        if (_baseline == null) {
+            throw error("missing baseline file");
+        }
+        _random = new Random(seed);
+    }
+
+    /** Check, measure, and record or compare. */
+    void run() {
+        ArrayList<Case> cases = new ArrayList<>();
+        for (int i = 0; i < CASES; i += 1) {
+            cases.add(randomCase());
+        }
+        for (Case c : cases) {
+            c.check();
+        }
+        System.out.printf("output identical to reference on %d cases%n",
+                          cases.size());
+
+        for (int i = 0; i < WARMUP_ROUNDS; i += 1) {
+            measure(cases);
+        }
+        double[] result = measure(cases);
+        for (int i = 1; i < MEASURED_ROUNDS; i += 1) {
+            double[] next = measure(cases);
+            result[0] = Math.max(result[0], next[0]);
+            result[1] = Math.min(result[1], next[1]);
+        }
+        System.out.printf("throughput: %.0f chars/s%n", result[0]);
+        System.out.printf("allocation: %.1f bytes/char%n", result[1]);
+
+        Properties stored = new Properties();
+        if (_record) {
+            stored.setProperty(THROUGHPUT, Double.toString(result[0]));
+            stored.setProperty(ALLOCATION, Double.toString(result[1]));
+            try (Writer out = new FileWriter(_baseline)) {
+                stored.store(out, "enigma macro benchmark baseline");
+            } catch (IOException excp) {
+                throw error("could not write %s", _baseline);
+            }
+            return;
+        }
+        try (Reader in = new FileReader(_baseline)) {
+            stored.load(in);
+        } catch (IOException excp) {
+            throw error("could not read %s (run with --record first)",
+                        _baseline);
+        }
+        double throughput = Double.parseDouble(stored.getProperty(THROUGHPUT));
+        double allocation = Double.parseDouble(stored.getProperty(ALLOCATION));
+        if (result[0] < throughput * (1 - _tolerance)) {
+            throw error("throughput regressed: %.0f chars/s, baseline %.0f",
+                        result[0], throughput);
+        }
+        if (result[1] > allocation * (1 + _tolerance) + 1) {
+            throw error("allocation regressed: %.1f bytes/char, baseline %.1f",
+                        result[1], allocation);
+        }
+    }
+
+    /** Return {chars per second, bytes allocated per char} for one pass of
+     *  Machine over the messages of CASES. */
+    private double[] measure(ArrayList<Case> cases) {
+        long chars = 0;
+        long bytes0 = allocatedBytes();
+        long start = System.nanoTime();
+        for (Case c : cases) {
+            chars += c.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytes0;
+        return new double[] {
+            chars * 1e9 / elapsed, (double) bytes / chars
+        };
+    }
+
+    /** Return the number of bytes allocated so far by this thread. */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean())
+            .getCurrentThreadAllocatedBytes();
+    }
+
+    /** Return a random configuration, setting and message. */
+    private Case randomCase() {
+        int size = 2 * (3 + _random.nextInt(11));
+        Alphabet alpha = new CharacterRange('A', (char) ('A' + size - 1));
+        int numRotors = 2 + _random.nextInt(6);
+        int pawls = 1 + _random.nextInt(numRotors - 1);
+
+        Case c = new Case();
+        c.alphabet = alpha;
+        c.cycles = new String[numRotors];
+        c.notches = new String[numRotors];
+        c.names = new String[numRotors];
+        RotorRegistry rotors = new RotorRegistry();
+        for (int i = 0; i < numRotors; i += 1) {
+            c.names[i] = "R" + i;
+            Permutation perm;
+            if (i == 0) {
+                c.cycles[i] = randomReflector(size);
+                perm = new Permutation(c.cycles[i], alpha);
+                rotors.add(new Reflector(c.names[i], perm));
+            } else if (i < numRotors - pawls) {
+                c.cycles[i] = randomPermutation(size);
+                perm = new Permutation(c.cycles[i], alpha);
+                rotors.add(new FixedRotor(c.names[i], perm));
+            } else {
+                c.cycles[i] = randomPermutation(size);
+                c.notches[i] = randomNotches(alpha);
+                perm = new Permutation(c.cycles[i], alpha);
+                rotors.add(new MovingRotor(c.names[i], perm, c.notches[i]));
+            }
+        }
+        StringBuilder setting = new StringBuilder();
+        for (int i = 1; i < numRotors; i += 1) {
+            setting.append(alpha.toChar(_random.nextInt(size)));
+        }
+        c.setting = setting.toString();
+        c.plugboard = _random.nextBoolean() ? randomReflector(size) : null;
+        c.machine = new Machine(alpha, numRotors, pawls, rotors);
+
+        int lines = _chars / LINE_LENGTH / CASES + 1;
+        c.message = new String[lines];
+        for (int i = 0; i < lines; i += 1) {
+            char[] line = new char[1 + _random.nextInt(LINE_LENGTH)];
+            for (int k = 0; k < line.length; k += 1) {
+                line[k] = alpha.toChar(_random.nextInt(size));
+            }
+            c.message[i] = new String(line);
+        }
+        return c;
+    }
+
+    /** Return the cycles of a random permutation of N symbols. */
+    private String randomPermutation(int n) {
+        ArrayList<Character> symbols = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            symbols.add((char) ('A' + i));
+        }
+        Collections.shuffle(symbols, _random);
+        StringBuilder cycles = new StringBuilder();
+        int i = 0;
+        while (i < n) {
+            int len = 1 + _random.nextInt(n - i);
+            cycles.append(cycles.length() == 0 ? "(" : " (");
+            for (int k = 0; k < len; k += 1) {
+                cycles.append(symbols.get(i + k));
+            }
+            cycles.append(')');
+            i += len;
+        }
+        return cycles.toString();
+    }
+
+    /** Return the cycles of a random fixed-point-free involution of N
+     *  symbols, N even. */
+    private String randomReflector(int n) {
+        ArrayList<Character> symbols = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            symbols.add((char) ('A' + i));
+        }
+        Collections.shuffle(symbols, _random);
+        StringBuilder cycles = new StringBuilder();
+        for (int i = 0; i < n; i += 2) {
+            cycles.append(i == 0 ? "(" : " (").append(symbols.get(i))
+                .append(symbols.get(i + 1)).append(')');
+        }
+        return cycles.toString();
+    }
+
+    /** Return one to three random notch characters from ALPHA. */
+    private String randomNotches(Alphabet alpha) {
+        StringBuilder notches = new StringBuilder();
+        int count = 1 + _random.nextInt(3);
+        for (int i = 0; i < count; i += 1) {
+            notches.append(alpha.toChar(_random.nextInt(alpha.size())));
+        }
+        return notches.toString();
+    }
+
+    /** One random configuration, setting and message. */
+    private static class Case {
+        /** Alphabet. */
+        private Alphabet alphabet;
+        /** Rotor names, wirings and notches, slot by slot. */
+        private String[] names, cycles, notches;
+        /** Initial setting and plugboard (or null). */
+        private String setting, plugboard;
+        /** The machine under test. */
+        private Machine machine;
+        /** Message lines. */
+        private String[] message;
+
+        /** Reset the machine under test to my setting. */
+        private void reset() {
+            machine.insertRotors(names);
+            machine.setRotors(setting);
+            machine.setPlugboard(plugboard == null ? null
+                                 : new Permutation(plugboard, alphabet));
+        }
+
+        /** Check the machine against the reference on my message. */
+        private void check() {
+            reset();
+            ReferenceMachine ref =
+                new ReferenceMachine(alphabet, cycles, notches, setting,
+                                     plugboard);
+            for (int i = 0; i < message.length; i += 1) {
+                if (!machine.convert(message[i])
+                    .equals(ref.convert(message[i]))) {
+                    throw error("output differs from reference: %s %s "
+                                + "plugboard %s, line %d",
+                                String.join(" ", cycles), setting,
+                                plugboard, i);
+                }
+            }
+        }
+
+        /** Convert my message with the machine under test, returning
+         *  the number of characters converted. */
+        private long run() {
+            reset();
+            long chars = 0;
+            for (String line : message) {
+                chars += machine.convert(line).length();
+            }
+            return chars;
+        }
+    }
+
+    /** Property names in the baseline file. */
+    private static final String
+        THROUGHPUT = "charsPerSecond", ALLOCATION = "bytesPerChar";
+    /** Default random seed, so runs are comparable. */
+    private static final long DEFAULT_SEED = 61;
+    /** Number of random configurations. */
+    private static final int CASES = 16;
+    /** Maximum message line length. */
+    private static final int LINE_LENGTH = 80;
+    /** Number of unmeasured passes before the measured ones. */
+    private static final int WARMUP_ROUNDS = 3;
+    /** Number of measured passes, of which the best is reported. */
+    private static final int MEASURED_ROUNDS = 5;
+
+    /** True if measurements are to be recorded rather than checked. */
+    private boolean _record;
+    /** Total message characters to generate. */
+    private int _chars = 200_000;
+    /** Allowed relative regression. */
+    private double _tolerance = 0.2;
+    /** Baseline properties file. */
+    private File _baseline;
+    /** Source of random cases. */
+    private final Random _random;
+
+}
@@ -1,12 +1,29 @@
 package enigma;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
-import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.*;
 
@@ -19,7 +36,25 @@ public final class Main {
 
     /**
      * Process a sequence of encryptions and decryptions, as
-     * specified by ARGS, where 1 <= ARGS.length <= 3.
+     * specified by ARGS, where 1 <= ARGS.length <= 3 after any leading
+     * options.  The option --pipeline reads, converts, and writes on
+     * separate threads.  The options --cache=N and --cache-bytes=N
+     * remember the results of up to N message lines or N bytes of
+     * results, so that a line converted again from the same settings and
+     * position is not converted again; --cache-stats reports how well
+     * the cache did on the standard error.  With the option --batch,
+     * ARGS must be CONFIG INPUT OUTDIR: each file named by INPUT (a
+     * directory, or a glob pattern such as in/*.txt) is converted as if
+     * by a separate run with configuration CONFIG, into the file of the
+     * same name in directory OUTDIR, which must not be the directory
+     * of the input files.  The option --trace=FILE records
+     * in FILE the rotor settings under which each character is
+     * converted, for TraceReplay; it cannot be combined with --batch or
+     * caching.  The option --engine=NAME converts with the engine NAME
+     * (see Engines), or with --engine=auto, with whichever engine a
+     * short calibration run finds fastest for the configuration, which
+     * it reports on the standard error.  The system property
+     * enigma.engine gives the default.
      * ARGS[0] is the name of a configuration file.
      * ARGS[1] is optional; when present, it names an input file
      * containing messages.  Otherwise, input comes from the standard
@@ -43,6 +78,55 @@ public final class Main {
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        int first = 0;
+        int cacheEntries = 0;
+        long cacheBytes = 0;
+        String engine = System.getProperty(Engines.PROPERTY);
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--pipeline")) {
+                _pipelined = true;
+            } else if (args[first].startsWith("--cache=")) {
+                cacheEntries =
+                    (int) count(args[first], Integer.MAX_VALUE);
+            } else if (args[first].startsWith("--cache-bytes=")) {
+                cacheBytes = count(args[first], Long.MAX_VALUE);
+            } else if (args[first].equals("--cache-stats")) {
+                _cacheStats = true;
+            } else if (args[first].equals("--batch")) {
+                _batch = true;
+            } else if (args[first].startsWith("--trace=")) {
+                _traceFile = args[first].substring("--trace=".length());
+            } else if (args[first].startsWith("--engine=")) {
+                engine = args[first].substring("--engine=".length());
+            } else {
+                throw error("unknown option: %s", args[first]);
+            }
+            first += 1;
+        }
+        if (cacheEntries > 0 || cacheBytes > 0 || _cacheStats) {
+            _cache = new ResultCache(
+                cacheEntries > 0 ? cacheEntries : CACHE_ENTRIES,
+                cacheBytes > 0 ? cacheBytes : CACHE_BYTES);
+        }
+        if (Engines.AUTO.equals(engine)) {
+            _calibrate = true;
+        } else if (engine != null) {
+            _engine = Engines.named(engine);
+        }
+        if (_traceFile != null && (_batch || _cache != null)) {
+            throw error("--trace cannot be combined with --batch or "
+                        + "caching");
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+        if (_batch) {
+            if (args.length != 3) {
+                throw error("--batch needs CONFIG INPUT OUTDIR");
+            }
+            _config = getInput(args[0]);
+            _batchInput = args[1];
+            _batchOutput = args[2];
+            return;
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
@@ -50,9 +134,10 @@ public final class Main {
         _config = getInput(args[0]);
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getMessages(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new InputReader(new BufferedReader(
+                    new InputStreamReader(System.in)));
         }
 
         if (args.length > 2) {
@@ -63,11 +148,60 @@ public final class Main {
     }
 
     /**
-     * Return a Scanner reading from the file named NAME.
+     * Return the number following the '=' in OPTION, which must be
+     * between 1 and MAX.
+     */
+    private static long count(String option, long max) {
+        String value = option.substring(option.indexOf('=') + 1);
+        try {
+            long n = Long.parseLong(value);
+            if (n > 0 && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through. */
+        }
+        throw error("bad option value: %s", option);
+    }
+
+    /**
+     * A Main that only reads configurations.
+     */
+    private Main() {
+    }
+
+    /**
+     * Return an Enigma machine configured from the configuration file
+     * named NAME, as the simulator would configure it.
+     */
+    static Machine configure(String name) {
+        Main main = new Main();
+        main._config = main.getInput(name);
+        return main.readConfig();
+    }
+
+    /**
+     * Return a Tokenizer for the words of the file named NAME.
+     */
+    private Tokenizer getInput(String name) {
+        try (Reader in = new FileReader(name)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[1 << 13];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                text.append(buffer, 0, n);
+            }
+            return new Tokenizer(text);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /**
+     * Return an InputReader reading messages from the file named NAME.
      */
-    private Scanner getInput(String name) {
+    private InputReader getMessages(String name) {
         try {
-            return new Scanner(new File(name));
+            return new InputReader(new BufferedReader(new FileReader(name)));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -84,50 +218,179 @@ public final class Main {
         }
     }
 
+    /**
+     * Return a stream writing to the trace file named NAME.
+     */
+    private OutputStream getTrace(String name) {
+        try {
+            return new FileOutputStream(name);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
     /**
      * Configure an Enigma machine from the contents of configuration
      * file _config and apply it to the messages in _input, sending the
-     * results to _output.
+     * results to _output, or in batch mode, to each batch input file.
      */
     private void process() {
-        Machine mac = readConfig();
-        String curSet;
-        String curLine = "";
-        boolean setting;
-        while (_input.hasNextLine()) {
-            if (!_input.hasNext("\\s*[*].*")) {
-                throw new EnigmaException("Missing * at the start of config");
+        try {
+            if (_batch) {
+                processBatch();
+            } else if (_traceFile == null) {
+                convertAll(readConfig());
             } else {
-                curSet = "";
-                setting = false;
-                while (!setting) {
-                    curLine = _input.nextLine();
-                    if (curLine.matches("[*].+")) {
-                        setting = true;
-                    } else {
-                        printMessageLine(curLine);
-                    }
+                Machine mac = readConfig();
+                try (TraceWriter trace =
+                     new TraceWriter(getTrace(_traceFile), mac.alphabet())) {
+                    mac.trace(trace);
+                    convertAll(mac);
                 }
-                int count = 0;
-                Scanner nextLine = new Scanner(curLine);
-                while ((count < (mac.numRotors() + 2)) || nextLine.hasNext(
-                        "[(].+[)]")) {
-                    if (!nextLine.hasNext()) {
-                        throw new EnigmaException("More rotors needed");
-                    }
-                    curSet += nextLine.next().replaceAll("[*]", "* ")
-                            + " ";
-                    count++;
+            }
+        } finally {
+            if (_cacheStats) {
+                System.err.printf("cache: %s%n", _cache);
+            }
+        }
+    }
+
+    /**
+     * Apply MAC to the messages in _input, sending the results to
+     * _output.
+     */
+    private void convertAll(Machine mac) {
+        if (_pipelined) {
+            new Pipeline(_input, mac, line -> setUp(mac, line), _cache,
+                         _output).run();
+            return;
+        }
+        for (String line = _input.next(); line != null;
+             line = _input.next()) {
+            if (_input.kind() == InputReader.SETTINGS) {
+                setUp(mac, line);
+            } else if (_input.kind() == InputReader.MESSAGE) {
+                String msg = stripBlanks(line);
+                printMessageLine(_cache == null ? mac.convert(msg)
+                                 : _cache.convert(mac, msg));
+            } else {
+                printMessageLine(line);
+            }
+        }
+    }
+
+    /**
+     * Convert each file named by _batchInput into the file of the same
+     * name in directory _batchOutput, reading and compiling the
+     * configuration only once.  Files are converted on a work-stealing
+     * pool with one thread per processor, largest first, so that no
+     * large file is left running alone at the end.  An error in one
+     * file is reported on the standard error, after which its output
+     * stops where a single run's would, and the other files carry on;
+     * if any file fails, throws an error at the end.
+     */
+    private void processBatch() {
+        Machine config = readConfig();
+        Path outDir = Paths.get(_batchOutput);
+        List<Path> files = batchFiles(_batchInput);
+        long[] sizes = new long[files.size()];
+        Integer[] order = new Integer[files.size()];
+        try {
+            Files.createDirectories(outDir);
+            for (int i = 0; i < sizes.length; i += 1) {
+                Path in = files.get(i);
+                Path out = outDir.resolve(in.getFileName());
+                if (Files.exists(out) && Files.isSameFile(in, out)) {
+                    throw error("output %s would overwrite its input", out);
+                }
+                sizes[i] = Files.size(in);
+                order[i] = i;
+            }
+        } catch (IOException excp) {
+            throw error("could not prepare batch: %s", excp.getMessage());
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes[i])
+                    .reversed());
+
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i : order) {
+            Path in = files.get(i);
+            Path out = outDir.resolve(in.getFileName());
+            tasks.add(() -> convertFile(config.copy(), in, out));
+        }
+        ExecutorService pool = Executors.newWorkStealingPool();
+        int failures = 0;
+        try {
+            for (Future<String> result : pool.invokeAll(tasks)) {
+                String message = result.get();
+                if (message != null) {
+                    System.err.printf("Error: %s%n", message);
+                    failures += 1;
                 }
-                setUp(mac, curSet.substring(0, curSet.length() - 1));
-                while (!_input.hasNext("[*]") && _input.hasNextLine()) {
-                    String a = _input.nextLine().replaceAll("\\s+", "")
-                            .toUpperCase();
-                    printMessageLine(mac.convert(a));
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("batch interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failures > 0) {
+            throw error("%d of %d files failed", failures, files.size());
+        }
+    }
+
+    /**
+     * Return the files named by INPUT, a directory or a glob pattern for
+     * files in one directory.
+     */
+    private static List<Path> batchFiles(String input) {
+        Path path = Paths.get(input);
+        Path dir = path;
+        String glob = "*";
+        if (!Files.isDirectory(path)) {
+            dir = path.getParent() == null ? Paths.get(".")
+                : path.getParent();
+            glob = path.getFileName().toString();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries =
+             Files.newDirectoryStream(dir, glob)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
                 }
             }
+        } catch (IOException excp) {
+            throw error("could not list %s", input);
+        }
+        if (files.isEmpty()) {
+            throw error("no input files match %s", input);
         }
+        return files;
+    }
 
+    /**
+     * Convert the messages in file IN with MAC, a machine with no rotors
+     * inserted, into file OUT.  Returns null on success, and otherwise
+     * the error message.
+     */
+    private String convertFile(Machine mac, Path in, Path out) {
+        Main file = new Main();
+        file._alphabet = _alphabet;
+        file._cache = _cache;
+        try (BufferedReader input = new BufferedReader(new FileReader(
+                 in.toFile()));
+             PrintStream output = new PrintStream(new BufferedOutputStream(
+                 new FileOutputStream(out.toFile())))) {
+            file._input = new InputReader(input);
+            file._output = output;
+            file.convertAll(mac);
+            return null;
+        } catch (IOException excp) {
+            return String.format("%s: could not convert: %s", in,
+                                 excp.getMessage());
+        } catch (EnigmaException excp) {
+            return String.format("%s: %s", in, excp.getMessage());
+        }
     }
 
     /**
@@ -136,14 +399,14 @@ public final class Main {
      */
     private Machine readConfig() {
         try {
-            _myRotors = new ArrayList<>();
+            _myRotors = new RotorRegistry();
             _alphabet = new CharacterRange('A', 'Z');
             _config.next();
-            if (_config.hasNextInt()) {
-                _numrotors = _config.nextInt();
-                if (_config.hasNextInt()) {
-                    _pawls = _config.nextInt();
-                    while (_config.hasNext(".+")) {
+            if (Tokenizer.isInt(_config.peek())) {
+                _numrotors = Integer.parseInt(_config.next());
+                if (Tokenizer.isInt(_config.peek())) {
+                    _pawls = Integer.parseInt(_config.next());
+                    while (_config.hasNext()) {
                         _myRotors.add(readRotor());
                     }
                 } else {
@@ -154,7 +417,17 @@ public final class Main {
                 throw new EnigmaException(
                         "Missing number of rotors");
             }
-            return new Machine(_alphabet, _numrotors, _pawls, _myRotors);
+            Machine mac = new Machine(_alphabet, _numrotors, _pawls,
+                                      _myRotors);
+            if (_calibrate) {
+                _engine = Engines.calibrate(mac, CALIBRATION_MILLIS,
+                                            System.err);
+                System.err.printf("engine: %s%n", _engine.name());
+            }
+            if (_engine != null) {
+                mac.setEngine(_engine);
+            }
+            return mac;
         } catch (NoSuchElementException excep) {
             throw error("Error in configuration file");
         }
@@ -172,24 +445,25 @@ public final class Main {
             name = _config.next().toUpperCase();
             holder = _config.next();
             if (holder.charAt(0) == 'N') {
-                while (_config.hasNext("\\s*[(]\\w+[)]\\s*")) {
+                while (Tokenizer.isCycle(_config.peek(), true)) {
                     cycles += _config.next() + " ";
                 }
-                return new FixedRotor(name,
-                        new Permutation(cycles, _alphabet));
+                return new FixedRotor(name, WiringPool.intern(
+                        new Permutation(cycles, _alphabet)));
             } else if (holder.charAt(0) == 'M') {
                 notches += holder.substring(1);
-                while (_config.hasNext("\\s*[(].+[)]\\s*")) {
-                    String s = _config.next().replaceAll("[)][(]", ") (");
+                while (Tokenizer.isCycle(_config.peek(), false)) {
+                    String s = _config.next().replace(")(", ") (");
                     cycles += s + " ";
                 }
-                return new MovingRotor(name,
-                        new Permutation(cycles, _alphabet), notches);
+                return new MovingRotor(name, WiringPool.intern(
+                        new Permutation(cycles, _alphabet)), notches);
             } else if (holder.charAt(0) == 'R') {
-                while (_config.hasNext("\\s*[(]\\w+[)]\\s*")) {
+                while (Tokenizer.isCycle(_config.peek(), true)) {
                     cycles += _config.next() + " ";
                 }
-                return new Reflector(name, new Permutation(cycles, _alphabet));
+                return new Reflector(name, WiringPool.intern(
+                        new Permutation(cycles, _alphabet)));
             } else {
                 throw new EnigmaException("Non-existing rotor type");
             }
@@ -199,31 +473,145 @@ public final class Main {
     }
 
     /**
-     * Set M according to the specification given on SETTINGS,
-     * which must have the format specified in the assignment.
+     * Set M according to the specification given on the settings line
+     * LINE, which must have the format specified in the assignment.
+     * Lines seen recently are not parsed again: their resolved rotor
+     * order, positions and compiled plugboard come from _settingsCache,
+     * so that repeating a line costs resetting the rotors rather than
+     * looking them up.
      */
-    private void setUp(Machine M, String settings) {
-        Scanner curr = new Scanner(settings);
-        String[] listedRotors = new String[M.numRotors()];
+    private void setUp(Machine M, String line) {
+        String key = normalize(line);
+        Settings settings = _settingsCache.get(key);
+        if (settings == null) {
+            settings = parseSettings(M, line);
+            if (settings.rotors != null) {
+                M.insertRotors(settings.rotors);
+                settings.order = M.order();
+            }
+            _settingsCache.put(key, settings);
+        } else if (settings.order != null) {
+            M.insertRotors(settings.order);
+        }
+        if (settings.order != null) {
+            if (settings.positions != null) {
+                M.setRotors(settings.positions);
+            }
+            if (settings.plugboard != null) {
+                M.setPlugboard(settings.plugboard);
+            }
+        }
+    }
+
+    /**
+     * Return the settings specified by the settings line LINE for M.
+     */
+    private Settings parseSettings(Machine M, String line) {
+        StringBuilder curSet = new StringBuilder();
+        int count = 0;
+        Tokenizer nextLine = new Tokenizer(line);
+        while ((count < (M.numRotors() + 2))
+               || Tokenizer.isCycle(nextLine.peek(), false)) {
+            if (!nextLine.hasNext()) {
+                throw new EnigmaException("More rotors needed");
+            }
+            curSet.append(nextLine.next().replace("*", "* ")).append(' ');
+            count++;
+        }
+        Tokenizer curr = new Tokenizer(curSet);
+        Settings result = new Settings();
         String p = "";
-        if (curr.hasNext("[*]")) {
+        if ("*".equals(curr.peek())) {
             curr.next();
+            result.rotors = new String[M.numRotors()];
             for (int i = 0; i < M.numRotors(); i++) {
-                listedRotors[i] = curr.next();
+                result.rotors[i] = curr.next();
             }
-            M.insertRotors(listedRotors);
-            if (curr.hasNext("\\w{" + (M.numRotors() - 1) + "}")) {
-                M.setRotors(curr.next());
+            if (Tokenizer.isWord(curr.peek(), M.numRotors() - 1)) {
+                result.positions = curr.next();
             }
-            while (curr.hasNext("[(]\\w+[)]")) {
+            while (Tokenizer.isCycle(curr.peek(), true)) {
                 p += curr.next() + " ";
             }
             if (p.length() > 0) {
-                M.setPlugboard(new Permutation(p.
+                result.plugboard = new Permutation(p.
                         substring(0, p.length() - 1),
-                        _alphabet));
+                        _alphabet);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return LINE with each run of blanks replaced by one space and
+     * leading and trailing blanks removed.
+     */
+    private static String normalize(String line) {
+        StringBuilder result = new StringBuilder(line.length());
+        boolean blank = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char ch = line.charAt(i);
+            if (isBlank(ch)) {
+                blank = result.length() > 0;
+            } else {
+                if (blank) {
+                    result.append(' ');
+                    blank = false;
+                }
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * The contents of a settings line.
+     */
+    private static class Settings {
+        /**
+         * Rotor names, reflector first, or null if the line sets
+         * nothing.
+         */
+        private String[] rotors;
+        /**
+         * Initial positions, or null if not given.
+         */
+        private String positions;
+        /**
+         * Plugboard, or null if none is given (which leaves the current
+         * one in place).
+         */
+        private Permutation plugboard;
+        /**
+         * The rotors resolved by the machine, once inserted, or null if
+         * the line sets nothing.
+         */
+        private Machine.Order order;
+    }
+
+    /**
+     * Return LINE in upper case with all blanks removed.
+     */
+    private static String stripBlanks(String line) {
+        char[] chars = new char[line.length()];
+        int n = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char ch = line.charAt(i);
+            if (!isBlank(ch)) {
+                chars[n] = Character.toUpperCase(ch);
+                n += 1;
             }
         }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Returns true iff CH is one of the blanks removed from message lines
+     * (those matched by the regular expression \s).
+     */
+    static boolean isBlank(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B'
+            || ch == '\f' || ch == '\r';
     }
 
     /**
@@ -231,22 +619,92 @@ public final class Main {
      * have fewer letters).
      */
     private void printMessageLine(String msg) {
-        String message = msg;
-        if (message.length() == 0) {
-            _output.println();
-        } else {
-            while (message.length() > 0) {
-                if (message.length() <= 5) {
-                    _output.println(message);
-                    message = "";
-                } else {
-                    _output.print(message.substring(0, 5) + " ");
-                    message = message.substring(5, message.length());
-                }
+        StringBuilder line = new StringBuilder(msg.length() + 8);
+        appendMessageLine(msg.toCharArray(), 0, msg.length(), line);
+        _output.print(line);
+    }
+
+    /**
+     * Append MSG[START .. END-1] to OUT in groups of five (except that the
+     * last group may have fewer letters), followed by a line separator.
+     */
+    static void appendMessageLine(char[] msg, int start, int end,
+                                  StringBuilder out) {
+        for (int i = start; i < end; i += 5) {
+            if (i > start) {
+                out.append(' ');
             }
+            out.append(msg, i, Math.min(5, end - i));
         }
+        out.append(LINE_SEPARATOR);
     }
 
+    /**
+     * Maximum number of settings lines remembered.
+     */
+    private static final int SETTINGS_CACHE = 1024;
+
+    /**
+     * Default maximum number of results cached.
+     */
+    private static final int CACHE_ENTRIES = 1 << 16;
+
+    /**
+     * Default maximum number of bytes of results cached.
+     */
+    private static final long CACHE_BYTES = 64L << 20;
+
+    /**
+     * Milliseconds for which calibration times each engine.
+     */
+    private static final long CALIBRATION_MILLIS = 100;
+
+    /**
+     * Line terminator used by println.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * True if input is read, converted, and written by a Pipeline.
+     */
+    private boolean _pipelined;
+
+    /**
+     * Results of converting message lines, or null if not caching.
+     */
+    private ResultCache _cache;
+
+    /**
+     * True if cache statistics are reported when done.
+     */
+    private boolean _cacheStats;
+
+    /**
+     * True if converting a batch of files.
+     */
+    private boolean _batch;
+
+    /**
+     * Input directory or glob pattern, and output directory, in batch
+     * mode.
+     */
+    private String _batchInput, _batchOutput;
+
+    /**
+     * Name of the trace file, or null if not tracing.
+     */
+    private String _traceFile;
+
+    /**
+     * Engine my machines convert with, or null for their default.
+     */
+    private Engine _engine;
+
+    /**
+     * True if the engine is to be chosen by calibration.
+     */
+    private boolean _calibrate;
+
     /**
      * Alphabet used in this machine.
      */
@@ -255,12 +713,12 @@ public final class Main {
     /**
      * Source of input messages.
      */
-    private Scanner _input;
+    private InputReader _input;
 
     /**
      * Source of machine configuration.
      */
-    private Scanner _config;
+    private Tokenizer _config;
 
     /**
      * File for encoded/decoded messages.
@@ -278,8 +736,14 @@ public final class Main {
     private int _pawls;
 
     /**
-     * List of all rotors.
+     * All rotors described by the configuration, by name.
+     */
+    private RotorRegistry _myRotors;
+
+    /**
+     * Recently used settings lines, by normalized text.
      */
-    private Collection<Rotor> _myRotors;
+    private final LruCache<String, Settings> _settingsCache =
+        new LruCache<>(SETTINGS_CACHE);
 
 }
@@ -16,21 +16,27 @@ class MovingRotor extends Rotor {
         super(name, perm);
         _notches = notches;
         _permutation = perm;
+        _notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            char notch = notches.charAt(i);
+            if (perm.alphabet().contains(notch)) {
+                _notchAt[perm.alphabet().toInt(notch)] = true;
+            }
+        }
     }
 
     @Override
     boolean rotates() {
         return true;
     }
+    @Override
+    String notches() {
+        return _notches;
+    }
+
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i += 1) {
-            char notch = _notches.charAt(i);
-            if (notch == alphabet().toChar(setting())) {
-                return true;
-            }
-        }
-        return false;
+        return _notchAt[setting()];
     }
 
     /** Advances setting by 1. */
@@ -39,9 +45,16 @@ class MovingRotor extends Rotor {
         super.set(_permutation.wrap(super.setting() + 1));
     }
 
+    @Override
+    Rotor copy() {
+        return new MovingRotor(name(), _permutation, _notches);
+    }
+
     /** List of the positions of the notches of the rotor. */
     private String _notches;
     /** Gives a permutation variable. */
     private Permutation _permutation;
+    /** True at each setting that is a notch. */
+    private final boolean[] _notchAt;
 
 }
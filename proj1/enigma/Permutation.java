@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -20,12 +22,33 @@ class Permutation {
         _cycles = cycles;
     }
 
+    /**
+     * A permutation of ALPHABET mapping each index I to FORWARD[I] and
+     * back by INVERSE, tables which are not copied and must not change.
+     * Its cycles are worked out if asked for.
+     */
+    private Permutation(Alphabet alphabet, int[] forward, int[] inverse) {
+        _alphabet = alphabet;
+        _inverse = inverse;
+        _forward = forward;
+    }
+
+    /**
+     * A permutation of ALPHABET mapping each index I to FORWARD[I],
+     * which is not copied and must not change.
+     */
+    private Permutation(Alphabet alphabet, int[] forward) {
+        this(alphabet, forward, inverseOf(forward));
+    }
+
     /**
      * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      * c0c1...cm.
      */
-    private void addCycle(String cycle) {
-        _cycles = _cycles + cycle;
+    private synchronized void addCycle(String cycle) {
+        _cycles = cycles() + cycle;
+        _forward = null;
+        _sparse = null;
     }
 
     /**
@@ -51,10 +74,15 @@ class Permutation {
      * alphabet size.
      */
     int permute(int p) {
-        int input = wrap(p);
-        char temp = _alphabet.toChar(input);
-        temp = permute(temp);
-        return _alphabet.toInt(temp);
+        int[] table = _forward;
+        if (table == null) {
+            Sparse sparse = sparseLayout();
+            if (sparse != null) {
+                return sparse.permute(wrap(p));
+            }
+            table = _forward;
+        }
+        return table[wrap(p)];
     }
 
     /**
@@ -62,10 +90,13 @@ class Permutation {
      * to  C modulo the alphabet size.
      */
     int invert(int c) {
-        int input = wrap(c);
-        char temp = _alphabet.toChar(input);
-        temp = invert(temp);
-        return _alphabet.toInt(temp);
+        if (_forward == null) {
+            Sparse sparse = sparseLayout();
+            if (sparse != null) {
+                return sparse.invert(wrap(c));
+            }
+        }
+        return _inverse[wrap(c)];
     }
 
     /**
@@ -73,39 +104,29 @@ class Permutation {
      * in ALPHABET, and converting the result to a character of ALPHABET.
      */
     char permute(char p) {
-        char letter = p;
-        String element = Character.toString(p);
-        String[] iterate = listCycles(_cycles);
-        for (String cycle: iterate) {
-            if (cycle.contains(element)) {
-                int index = cycle.indexOf(element);
-                if (index == cycle.length() - 1) {
-                    letter = cycle.charAt(0);
-                } else {
-                    letter = cycle.charAt(index + 1);
-                }
-            }
+        if (!_alphabet.contains(p)) {
+            return p;
         }
-        return letter;
+        return _alphabet.toChar(permute(_alphabet.toInt(p)));
     }
     /**
      * Return the result of applying the inverse of this permutation to C.
      */
     char invert(char c) {
-        char letter = c;
-        String[] iterate = listCycles(_cycles);
-        String element = Character.toString(c);
-        for (String cycle: iterate) {
-            if (cycle.contains(element)) {
-                int current = cycle.indexOf(element);
-                if (current == 0) {
-                    letter = cycle.charAt(cycle.length() - 1);
-                } else {
-                    letter = cycle.charAt(current - 1);
-                }
-            }
+        if (!_alphabet.contains(c)) {
+            return c;
+        }
+        return _alphabet.toChar(invert(_alphabet.toInt(c)));
+    }
+
+    /**
+     * Return the cycles from which I was built.
+     */
+    String cycles() {
+        if (_cycles == null) {
+            _cycles = cyclesOf(table());
         }
-        return letter;
+        return _cycles;
     }
 
     /**
@@ -120,7 +141,7 @@ class Permutation {
      * permutation for which no value maps to itself).
      */
     boolean derangement() {
-        String[] itercycles = listCycles(_cycles);
+        String[] itercycles = listCycles(cycles());
         for (String cycles: itercycles) {
             if (cycles.length() == 1) {
                 return false;
@@ -129,14 +150,349 @@ class Permutation {
         return true;
     }
 
+    /**
+     * Return true iff I am compiled to the sparse layout, compiling my
+     * cycles if need be.
+     */
+    boolean isSparse() {
+        return sparseLayout() != null;
+    }
+
+    /**
+     * Return the permutation that applies me and then OTHER, which must
+     * permute an alphabet of the same size.
+     */
+    Permutation compose(Permutation other) {
+        if (other.size() != size()) {
+            throw error("cannot compose permutations of different sizes");
+        }
+        int[] mine = table(), theirs = other.table();
+        int[] result = new int[mine.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = theirs[mine[i]];
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /**
+     * Return my inverse, which shares my tables.
+     */
+    Permutation inverse() {
+        int[] forward = table();
+        int[] inverse = _forward == null ? inverseOf(forward) : _inverse;
+        return new Permutation(_alphabet, inverse, forward);
+    }
+
+    /**
+     * Return my conjugate by a shift of K: the permutation that a rotor
+     * wired as I am performs at setting K, mapping X to my image of
+     * X + K, less K, all modulo the alphabet size.
+     */
+    Permutation conjugateByShift(int k) {
+        int[] mine = table();
+        int n = mine.length;
+        int shift = Math.floorMod(k, n);
+        int[] result = new int[n];
+        for (int x = 0; x < n; x += 1) {
+            int y = mine[x + shift < n ? x + shift : x + shift - n] - shift;
+            result[x] = y < 0 ? y + n : y;
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /**
+     * Return me applied K times, or my inverse applied -K times if K is
+     * negative.  Rather than square repeatedly, I rotate each of my
+     * cycles by K modulo its length, which takes time linear in the
+     * alphabet size whatever K is.
+     */
+    Permutation pow(int k) {
+        int[] mine = table();
+        int n = mine.length;
+        int[] result = new int[n];
+        int[] cycle = new int[n];
+        boolean[] seen = new boolean[n];
+        for (int start = 0; start < n; start += 1) {
+            if (!seen[start]) {
+                int len = 0;
+                for (int x = start; !seen[x]; x = mine[x]) {
+                    seen[x] = true;
+                    cycle[len] = x;
+                    len += 1;
+                }
+                int shift = Math.floorMod(k, len);
+                for (int i = 0; i < len; i += 1) {
+                    int j = i + shift < len ? i + shift : i + shift - len;
+                    result[cycle[i]] = cycle[j];
+                }
+            }
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /**
+     * Return the lengths of my cycles, fixed points included, from
+     * longest to shortest.  They sum to the alphabet size, and two
+     * permutations are conjugate iff their cycle types are equal.
+     */
+    int[] cycleType() {
+        int[] mine = table();
+        int n = mine.length;
+        int[] counts = new int[n + 1];
+        boolean[] seen = new boolean[n];
+        int cycles = 0;
+        for (int start = 0; start < n; start += 1) {
+            if (!seen[start]) {
+                int len = 0;
+                for (int x = start; !seen[x]; x = mine[x]) {
+                    seen[x] = true;
+                    len += 1;
+                }
+                counts[len] += 1;
+                cycles += 1;
+            }
+        }
+        int[] result = new int[cycles];
+        int k = 0;
+        for (int len = n; len > 0; len -= 1) {
+            for (int i = 0; i < counts[len]; i += 1) {
+                result[k] = len;
+                k += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the image of every index under me, which the caller must
+     * not change: my own table if I use dense tables, and otherwise a
+     * new one.
+     */
+    private int[] table() {
+        Sparse sparse = sparseLayout();
+        if (sparse == null) {
+            return _forward;
+        }
+        int[] table = new int[size()];
+        for (int i = 0; i < table.length; i += 1) {
+            table[i] = sparse.permute(i);
+        }
+        return table;
+    }
+
+    /**
+     * Return the inverse of the permutation table FORWARD.
+     */
+    private static int[] inverseOf(int[] forward) {
+        int[] inverse = new int[forward.length];
+        for (int i = 0; i < forward.length; i += 1) {
+            inverse[forward[i]] = i;
+        }
+        return inverse;
+    }
+
+    /**
+     * Return cycles in the form accepted by the constructor describing
+     * the permutation of my alphabet with table FORWARD, each cycle
+     * starting at its smallest index and fixed points left out.
+     */
+    private String cyclesOf(int[] forward) {
+        StringBuilder cycles = new StringBuilder();
+        boolean[] seen = new boolean[forward.length];
+        for (int start = 0; start < forward.length; start += 1) {
+            if (!seen[start] && forward[start] != start) {
+                if (cycles.length() > 0) {
+                    cycles.append(' ');
+                }
+                cycles.append('(');
+                for (int x = start; !seen[x]; x = forward[x]) {
+                    seen[x] = true;
+                    cycles.append(_alphabet.toChar(x));
+                }
+                cycles.append(')');
+            }
+        }
+        return cycles.toString();
+    }
+
+    /**
+     * Return my sparse layout, or null if I use dense tables, compiling
+     * my cycles on first use.
+     */
+    private Sparse sparseLayout() {
+        if (_forward == null && _sparse == null) {
+            compile();
+        }
+        return _sparse;
+    }
+
+    /**
+     * Translate _cycles into either the dense tables _forward and
+     * _inverse, or the sparse layout _sparse.  Small alphabets always
+     * get dense tables.  A large alphabet of which only a small fraction
+     * is moved gets the sparse layout, which costs space and a binary
+     * search in proportion to the characters moved instead of the
+     * alphabet size.  Rotors that are never placed in a machine are
+     * never compiled.
+     */
+    private synchronized void compile() {
+        if (_forward != null || _sparse != null) {
+            return;
+        }
+        int[] from = new int[8], to = new int[8];
+        int k = 0;
+        int first = -1, prev = -1;
+        for (int i = 0; i < _cycles.length(); i += 1) {
+            char ch = _cycles.charAt(i);
+            int src = -1, dst = -1;
+            if (ch == '(') {
+                first = prev = -1;
+            } else if (ch == ')') {
+                if (first >= 0) {
+                    src = prev;
+                    dst = first;
+                }
+            } else if (!Character.isWhitespace(ch)) {
+                if (!_alphabet.contains(ch)) {
+                    throw error("character %c not in alphabet", ch);
+                }
+                int cur = _alphabet.toInt(ch);
+                if (first < 0) {
+                    first = cur;
+                } else {
+                    src = prev;
+                    dst = cur;
+                }
+                prev = cur;
+            }
+            if (src >= 0) {
+                if (k == from.length) {
+                    from = Arrays.copyOf(from, 2 * k);
+                    to = Arrays.copyOf(to, 2 * k);
+                }
+                from[k] = src;
+                to[k] = dst;
+                k += 1;
+            }
+        }
+        int n = size();
+        if (n > DENSE_LIMIT && (long) k * SPARSE_RATIO <= n) {
+            _sparse = new Sparse(from, to, k);
+            return;
+        }
+        int[] fwd = new int[n];
+        int[] inv = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            fwd[i] = inv[i] = i;
+        }
+        for (int i = 0; i < k; i += 1) {
+            fwd[from[i]] = to[i];
+            inv[to[i]] = from[i];
+        }
+        _inverse = inv;
+        _forward = fwd;
+    }
+
+    /**
+     * The moved points of a permutation and their images, in sorted
+     * arrays searched by bisection.
+     */
+    private static final class Sparse {
+
+        /**
+         * The layout for the mappings FROM[I] -> TO[I], 0 <= I < K,
+         * where later mappings of the same point replace earlier ones,
+         * as they do in dense tables.
+         */
+        Sparse(int[] from, int[] to, int k) {
+            _keys = new int[k];
+            _images = new int[k];
+            _size = sorted(from, to, k, _keys, _images);
+            _inverseKeys = new int[k];
+            _preimages = new int[k];
+            _inverseSize = sorted(to, from, k, _inverseKeys, _preimages);
+        }
+
+        /**
+         * Fill KEYS and VALUES with the mappings KEY[I] -> VALUE[I],
+         * 0 <= I < K, in increasing order of key, keeping only the last
+         * mapping of each key.  Returns the number of mappings kept.
+         */
+        private static int sorted(int[] key, int[] value, int k,
+                                  int[] keys, int[] values) {
+            long[] order = new long[k];
+            for (int i = 0; i < k; i += 1) {
+                order[i] = ((long) key[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            int m = 0;
+            for (int i = 0; i < k; i += 1) {
+                int j = (int) order[i];
+                if (m > 0 && keys[m - 1] == key[j]) {
+                    m -= 1;
+                }
+                keys[m] = key[j];
+                values[m] = value[j];
+                m += 1;
+            }
+            return m;
+        }
+
+        /** Return the image of P. */
+        int permute(int p) {
+            int i = Arrays.binarySearch(_keys, 0, _size, p);
+            return i >= 0 ? _images[i] : p;
+        }
+
+        /** Return the preimage of C. */
+        int invert(int c) {
+            int i = Arrays.binarySearch(_inverseKeys, 0, _inverseSize, c);
+            return i >= 0 ? _preimages[i] : c;
+        }
+
+        /** Moved points in increasing order, and their images. */
+        private final int[] _keys, _images;
+        /** Number of entries of _keys in use. */
+        private final int _size;
+        /** Images of moved points in increasing order, and their
+         *  preimages. */
+        private final int[] _inverseKeys, _preimages;
+        /** Number of entries of _inverseKeys in use. */
+        private final int _inverseSize;
+    }
+
+    /**
+     * Largest alphabet that always gets dense tables.
+     */
+    private static final int DENSE_LIMIT = 1 << 12;
+    /**
+     * A larger alphabet gets the sparse layout if at most one in this
+     * many of its characters is moved.
+     */
+    private static final int SPARSE_RATIO = 16;
+
     /**
      * Alphabet of this permutation.
      */
     private Alphabet _alphabet;
     /**
-     * String of form c0->c1->...->cm->c0 representing one cycle.
+     * String of form c0->c1->...->cm->c0 representing one cycle, or
+     * null until asked for if I was built from tables.
      */
     private String _cycles;
+    /**
+     * Image of each index, or null until compiled.  Written after
+     * _inverse, so a non-null value means both tables are ready.
+     */
+    private volatile int[] _forward;
+    /**
+     * Preimage of each index, valid once _forward is non-null.
+     */
+    private int[] _inverse;
+    /**
+     * Sparse layout, or null if unused or not yet compiled.
+     */
+    private volatile Sparse _sparse;
     /**
      * Returns the original OLDCYCLE as a list of strings of all the cycles,
      * so we can iterate through them.
@@ -84,4 +84,122 @@ public class PermutationTest {
                 new CharacterRange('A', 'Z'));
         assertEquals(true, q.derangement());
     }
+
+    @Test
+    public void testSparseLargeAlphabet() {
+        Alphabet cjk = new CharacterRange('\u4e00', '\u9fff');
+        Permutation p = new Permutation(
+            "(\u4e00\u4e01\u9fff) (\u5000\u6000)", cjk);
+        assertTrue(p.isSparse());
+        assertEquals('\u4e01', p.permute('\u4e00'));
+        assertEquals('\u4e00', p.permute('\u9fff'));
+        assertEquals('\u9fff', p.invert('\u4e00'));
+        assertEquals('\u6000', p.invert('\u5000'));
+        assertEquals('\u7000', p.permute('\u7000'));
+        assertEquals(0, p.permute(-1));
+        assertEquals(0x1000, p.invert(0x1000 + cjk.size()));
+    }
+
+    @Test
+    public void testDenseWhenMostlyMoved() {
+        StringBuilder cycles = new StringBuilder();
+        for (char c = '\u4e00'; c < '\u5e00'; c += 2) {
+            cycles.append('(').append(c).append((char) (c + 1)).append(')');
+        }
+        Alphabet cjk = new CharacterRange('\u4e00', '\u5fff');
+        Permutation p = new Permutation(cycles.toString(), cjk);
+        assertFalse(p.isSparse());
+        assertEquals('\u4e01', p.permute('\u4e00'));
+        assertEquals('\u5f00', p.invert('\u5f00'));
+        assertFalse(new Permutation("(AB)", UPPER).isSparse());
+    }
+
+    @Test
+    public void testComposeAndInverse() {
+        Permutation p = new Permutation("(ABC) (DE)", UPPER);
+        Permutation q = new Permutation("(AD) (BZ)", UPPER);
+        Permutation pq = p.compose(q);
+        for (int i = 0; i < 26; i += 1) {
+            assertEquals(q.permute(p.permute(i)), pq.permute(i));
+            assertEquals(p.invert(q.invert(i)), pq.invert(i));
+            assertEquals(p.invert(i), p.inverse().permute(i));
+            assertEquals(i, p.compose(p.inverse()).permute(i));
+        }
+        assertEquals("(AZBCDE)", pq.cycles());
+        assertEquals("(ACB) (DE)", p.inverse().cycles());
+        assertEquals("", p.compose(p.inverse()).cycles());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testComposeSizesDiffer() {
+        new Permutation("(AB)", UPPER).compose(
+            new Permutation("(AB)", new CharacterRange('A', 'C')));
+    }
+
+    @Test
+    public void testConjugateByShiftMatchesRotor() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Rotor rotor = new MovingRotor("I", p, "Q");
+        for (int k = 0; k < 26; k += 1) {
+            rotor.set(k);
+            Permutation c = p.conjugateByShift(k);
+            for (int x = 0; x < 26; x += 1) {
+                assertEquals(rotor.convertForward(x), c.permute(x));
+                assertEquals(rotor.convertBackward(x), c.invert(x));
+            }
+        }
+        assertEquals(p.conjugateByShift(3).cycles(),
+                     p.conjugateByShift(-23).cycles());
+    }
+
+    @Test
+    public void testPow() {
+        Permutation p = new Permutation(NAVALA.get("II"), UPPER);
+        Permutation repeated = new Permutation("", UPPER);
+        for (int k = 0; k <= 30; k += 1) {
+            for (int x = 0; x < 26; x += 1) {
+                assertEquals(repeated.permute(x), p.pow(k).permute(x));
+                assertEquals(repeated.invert(x), p.pow(-k).permute(x));
+            }
+            repeated = repeated.compose(p);
+        }
+        int[] type = p.cycleType();
+        long order = 1;
+        for (int len : type) {
+            order = order / gcd(order, len) * len;
+        }
+        assertEquals("", p.pow((int) order).cycles());
+        for (int x = 0; x < 26; x += 1) {
+            assertEquals(p.permute(x), p.pow((int) order + 1).permute(x));
+        }
+    }
+
+    /** Return the greatest common divisor of A and B. */
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    @Test
+    public void testCycleType() {
+        Permutation p = new Permutation("(PNH) (ABDFIKLZYXW) (JC)", UPPER);
+        assertArrayEquals(new int[] {11, 3, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+                                     1},
+                          p.cycleType());
+        assertArrayEquals(p.cycleType(),
+                          p.conjugateByShift(5).cycleType());
+        Permutation q = new Permutation("(AB)", UPPER);
+        assertArrayEquals(p.cycleType(),
+                          q.compose(p).compose(q).cycleType());
+    }
+
+    @Test
+    public void testAlgebraOnSparse() {
+        Alphabet cjk = new CharacterRange('\u4e00', '\u9fff');
+        Permutation p = new Permutation("(\u4e00\u4e01\u9fff)", cjk);
+        Permutation sq = p.pow(2);
+        assertEquals('\u9fff', sq.permute('\u4e00'));
+        assertEquals('\u4e00', p.inverse().permute('\u4e01'));
+        assertEquals(3, p.cycleType()[0]);
+        assertEquals(cjk.size() - 2, p.cycleType().length);
+    }
 }
@@ -0,0 +1,267 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/** Main's processing split into three stages on three threads: a reader
+ *  that classifies input lines into blocks, a converter that runs the
+ *  machine over them, and a writer that formats and prints the results.
+ *  The stages are connected by RingBuffers, and a fixed set of blocks
+ *  circulates from the writer back to the reader, so that throughput is
+ *  limited by the slowest stage and the steady state allocates nothing.
+ *  Output, including where it stops when an error occurs, is the same
+ *  as for Main's sequential processing.
+ *  @author Allison Wang
+ */
+class Pipeline {
+
+    /** A pipeline converting the lines of INPUT with MACHINE and printing
+     *  them on OUTPUT.  Settings lines are passed to SETTINGS, on the
+     *  converter thread, which must configure MACHINE accordingly.
+     *  Conversions go through CACHE, unless it is null. */
+    Pipeline(InputReader input, Machine machine, Consumer<String> settings,
+             ResultCache cache, PrintStream output) {
+        _input = input;
+        _machine = machine;
+        _cache = cache;
+        _settings = settings;
+        _output = output;
+        _free = new RingBuffer<>(BLOCKS);
+        _toConvert = new RingBuffer<>(BLOCKS);
+        _toWrite = new RingBuffer<>(BLOCKS);
+        _error = new AtomicReference<>();
+        for (int i = 0; i < BLOCKS; i += 1) {
+            _free.put(new Block());
+        }
+    }
+
+    /** Process all the input, returning when all of it has been written,
+     *  or throwing the first error any stage encountered after writing
+     *  everything that preceded it.  After an error, I do not wait for
+     *  the reader, which may be blocked on input that is yet to come; it
+     *  stops when it next passes on a block. */
+    void run() {
+        Thread[] stages = {
+            new Thread(this::read, "enigma-reader"),
+            new Thread(this::convert, "enigma-converter"),
+            new Thread(this::write, "enigma-writer")
+        };
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+        for (int i = stages.length - 1; i >= 0; i -= 1) {
+            if (i == 0 && _error.get() != null) {
+                break;
+            }
+            try {
+                stages[i].join();
+            } catch (InterruptedException excp) {
+                abort(new CancellationException());
+                Thread.currentThread().interrupt();
+            }
+        }
+        RuntimeException error = _error.get();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /** Reader stage: fill blocks with classified lines. */
+    private void read() {
+        try {
+            while (true) {
+                Block block = _free.take();
+                block.clear();
+                try {
+                    do {
+                        String line = _input.next();
+                        if (line == null) {
+                            block.last = true;
+                            break;
+                        }
+                        block.add(line, _input.kind());
+                    } while (!block.full() && _input.ready());
+                } catch (RuntimeException excp) {
+                    block.fail(excp, block.count);
+                }
+                _toConvert.put(block);
+                if (block.last) {
+                    return;
+                }
+            }
+        } catch (CancellationException excp) {
+            return;
+        }
+    }
+
+    /** Converter stage: apply settings lines and convert message lines
+     *  in place. */
+    private void convert() {
+        try {
+            while (true) {
+                Block block = _toConvert.take();
+                int n = block.error == null ? block.count : block.errorAt;
+                for (int i = 0; i < n; i += 1) {
+                    try {
+                        if (block.kinds[i] == InputReader.SETTINGS) {
+                            _settings.accept(block.line(i));
+                        } else if (block.kinds[i] != InputReader.MESSAGE) {
+                            continue;
+                        } else if (_cache == null) {
+                            block.ends[i] =
+                                _machine.convert(block.text, block.starts[i],
+                                                 block.ends[i]);
+                        } else {
+                            block.ends[i] =
+                                _cache.convert(_machine, block.text,
+                                               block.starts[i],
+                                               block.ends[i]);
+                        }
+                    } catch (RuntimeException excp) {
+                        block.fail(excp, i);
+                        break;
+                    }
+                }
+                _toWrite.put(block);
+                if (block.last) {
+                    return;
+                }
+            }
+        } catch (CancellationException excp) {
+            return;
+        }
+    }
+
+    /** Writer stage: print converted and verbatim lines in groups of
+     *  five. */
+    private void write() {
+        StringBuilder out = new StringBuilder();
+        try {
+            while (true) {
+                Block block = _toWrite.take();
+                int n = block.error == null ? block.count : block.errorAt;
+                for (int i = 0; i < n; i += 1) {
+                    if (block.kinds[i] != InputReader.SETTINGS) {
+                        Main.appendMessageLine(block.text, block.starts[i],
+                                               block.ends[i], out);
+                    }
+                }
+                _output.print(out);
+                out.setLength(0);
+                if (block.last) {
+                    _output.flush();
+                    if (block.error != null) {
+                        abort(block.error);
+                    }
+                    return;
+                }
+                _free.put(block);
+            }
+        } catch (CancellationException excp) {
+            return;
+        }
+    }
+
+    /** Record ERROR, unless an error has already been recorded, and stop
+     *  all stages. */
+    private void abort(RuntimeException error) {
+        _error.compareAndSet(null, error);
+        _free.abort();
+        _toConvert.abort();
+        _toWrite.abort();
+    }
+
+    /** A batch of input lines, stored in one character array. */
+    private static class Block {
+
+        /** Forget all lines, error, and end-of-input marks. */
+        void clear() {
+            count = used = 0;
+            last = false;
+            error = null;
+        }
+
+        /** Return true if no more lines should be added. */
+        boolean full() {
+            return count == kinds.length || used >= text.length / 2;
+        }
+
+        /** Add LINE, of kind KIND (an InputReader kind).  Whitespace is
+         *  removed from message lines. */
+        void add(String line, int kind) {
+            if (used + line.length() > text.length) {
+                char[] bigger = new char[2 * (used + line.length())];
+                System.arraycopy(text, 0, bigger, 0, used);
+                text = bigger;
+            }
+            starts[count] = used;
+            for (int k = 0; k < line.length(); k += 1) {
+                char ch = line.charAt(k);
+                if (kind != InputReader.MESSAGE || !Main.isBlank(ch)) {
+                    text[used] = ch;
+                    used += 1;
+                }
+            }
+            ends[count] = used;
+            kinds[count] = kind;
+            count += 1;
+        }
+
+        /** Return line I as a string. */
+        String line(int i) {
+            return new String(text, starts[i], ends[i] - starts[i]);
+        }
+
+        /** Record that ERROR occurred on line AT, so that no line from AT
+         *  on is written, and that this is the last block. */
+        void fail(RuntimeException err, int at) {
+            error = err;
+            errorAt = at;
+            last = true;
+        }
+
+        /** Text of all lines. */
+        private char[] text = new char[BLOCK_CHARS];
+        /** Number of characters of text in use. */
+        private int used;
+        /** Number of lines. */
+        private int count;
+        /** Bounds of each line in text. */
+        private final int[] starts = new int[BLOCK_LINES],
+            ends = new int[BLOCK_LINES];
+        /** Kind of each line. */
+        private final int[] kinds = new int[BLOCK_LINES];
+        /** True if no blocks follow this one. */
+        private boolean last;
+        /** The error that ended processing, if any. */
+        private RuntimeException error;
+        /** Index of the line on which error occurred. */
+        private int errorAt;
+    }
+
+    /** Number of blocks in circulation, a power of two. */
+    private static final int BLOCKS = 8;
+    /** Maximum lines per block. */
+    private static final int BLOCK_LINES = 256;
+    /** Initial characters per block. */
+    private static final int BLOCK_CHARS = 1 << 15;
+
+    /** Source of classified lines. */
+    private final InputReader _input;
+    /** The machine used by the converter stage. */
+    private final Machine _machine;
+    /** Cache of conversions, or null. */
+    private final ResultCache _cache;
+    /** Applies settings lines to _machine. */
+    private final Consumer<String> _settings;
+    /** Destination of converted lines. */
+    private final PrintStream _output;
+    /** Blocks waiting to be filled, converted, and written. */
+    private final RingBuffer<Block> _free, _toConvert, _toWrite;
+    /** The first error encountered by any stage. */
+    private final AtomicReference<RuntimeException> _error;
+
+}
@@ -0,0 +1,173 @@
+package enigma;
+
+/** A direct transcription of the original, unoptimized machine and
+ *  permutation code, which works on cycle strings one character at a
+ *  time, with stepping written as the plain rule that Stepper
+ *  implements incrementally: a rotor with a pawl moves if it is the
+ *  rightmost, if its right neighbor is at a notch, or if it is at a
+ *  notch and its left neighbor has a pawl.  It is deliberately left
+ *  slow and simple: it exists only so that MacroBenchmark can check that
+ *  the real Machine produces identical output.
+ *  @author Allison Wang
+ */
+class ReferenceMachine {
+
+    /** A machine over ALPHABET whose slot I holds a rotor with wiring
+     *  CYCLES[I] and notches NOTCHES[I] (null for a rotor without a
+     *  ratchet).  Slot 0 holds the reflector.  The non-reflector rotors
+     *  are set to SETTING, and PLUGBOARD (possibly null) gives the
+     *  plugboard cycles. */
+    ReferenceMachine(Alphabet alphabet, String[] cycles, String[] notches,
+                     String setting, String plugboard) {
+        _alphabet = alphabet;
+        _cycles = cycles.clone();
+        _notches = notches.clone();
+        _plugboard = plugboard;
+        _settings = new int[cycles.length];
+        for (int i = 1; i < cycles.length; i += 1) {
+            _settings[i] = alphabet.toInt(setting.charAt(i - 1));
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, ignoring blanks. */
+    String convert(String msg) {
+        String converted = "";
+        for (int i = 0; i < msg.length(); i++) {
+            char character = Character.toUpperCase(msg.charAt(i));
+            if (character != ' ') {
+                int temp = _alphabet.toInt(character);
+                char convert = _alphabet.toChar(convert(temp));
+                converted += Character.toString(convert);
+            }
+        }
+        return converted;
+    }
+
+    /** Returns the conversion of index C after advancing the rotors. */
+    int convert(int c) {
+        int n = _cycles.length;
+        boolean[] moves = new boolean[n];
+        for (int slot = 1; slot < n; slot += 1) {
+            boolean pawl = _notches[slot] != null;
+            boolean leftPawl = slot > 1 && _notches[slot - 1] != null;
+            moves[slot] = pawl
+                && (slot == n - 1 || atNotch(slot + 1)
+                    || (leftPawl && atNotch(slot)));
+        }
+        for (int slot = 1; slot < n; slot += 1) {
+            if (moves[slot]) {
+                advance(slot);
+            }
+        }
+        int in = c % _alphabet.size();
+        if (_plugboard != null) {
+            in = permute(_plugboard, in);
+        }
+        for (int slot = n - 1; slot > 0; slot--) {
+            in = wrap(permute(_cycles[slot], wrap(in + _settings[slot]))
+                      - _settings[slot]);
+        }
+        int out = permute(_cycles[0], in);
+        for (int slot = 1; slot < n; slot++) {
+            out = wrap(invert(_cycles[slot], wrap(out + _settings[slot]))
+                       - _settings[slot]);
+        }
+        if (_plugboard != null) {
+            out = invert(_plugboard, out);
+        }
+        return out;
+    }
+
+    /** Return true iff the rotor in SLOT is at one of its notches. */
+    private boolean atNotch(int slot) {
+        String notches = _notches[slot];
+        if (notches == null) {
+            return false;
+        }
+        for (int i = 0; i < notches.length(); i += 1) {
+            if (notches.charAt(i) == _alphabet.toChar(_settings[slot])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Advance the rotor in SLOT, if it has a ratchet. */
+    private void advance(int slot) {
+        if (_notches[slot] != null) {
+            _settings[slot] = wrap(_settings[slot] + 1);
+        }
+    }
+
+    /** Return P modulo the alphabet size. */
+    private int wrap(int p) {
+        int r = p % _alphabet.size();
+        if (r < 0) {
+            r += _alphabet.size();
+        }
+        return r;
+    }
+
+    /** Return the image of index P under CYCLES. */
+    private int permute(String cycles, int p) {
+        char letter = _alphabet.toChar(wrap(p));
+        String element = Character.toString(letter);
+        for (String cycle : listCycles(cycles)) {
+            if (cycle.contains(element)) {
+                int index = cycle.indexOf(element);
+                if (index == cycle.length() - 1) {
+                    letter = cycle.charAt(0);
+                } else {
+                    letter = cycle.charAt(index + 1);
+                }
+            }
+        }
+        return _alphabet.toInt(letter);
+    }
+
+    /** Return the preimage of index C under CYCLES. */
+    private int invert(String cycles, int c) {
+        char letter = _alphabet.toChar(wrap(c));
+        String element = Character.toString(letter);
+        for (String cycle : listCycles(cycles)) {
+            if (cycle.contains(element)) {
+                int current = cycle.indexOf(element);
+                if (current == 0) {
+                    letter = cycle.charAt(cycle.length() - 1);
+                } else {
+                    letter = cycle.charAt(current - 1);
+                }
+            }
+        }
+        return _alphabet.toInt(letter);
+    }
+
+    /** Returns OLDCYCLE split into the contents of its cycles. */
+    private static String[] listCycles(String oldCycle) {
+        if (!oldCycle.contains(" ")) {
+            oldCycle = oldCycle.replaceAll("\\)", "");
+            oldCycle = oldCycle.replaceAll("\\(", "");
+            String[] separated = {oldCycle};
+            return separated;
+        } else {
+            oldCycle = oldCycle.replaceAll(" ", "");
+            String[] second = oldCycle.split("\\)\\(");
+            second[0] = second[0].substring(1);
+            int end = second.length - 1;
+            second[end] = second[end].substring(0, second[end].length() - 1);
+            return second;
+        }
+    }
+
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Wiring of the rotor in each slot, reflector first. */
+    private final String[] _cycles;
+    /** Notches of the rotor in each slot, or null if it cannot move. */
+    private final String[] _notches;
+    /** Current setting of each slot. */
+    private final int[] _settings;
+    /** Plugboard cycles, or null. */
+    private final String _plugboard;
+
+}
@@ -21,6 +21,10 @@ class Reflector extends FixedRotor {
         throw error("reflector cannot rotate backwards");
     }
     @Override
+    Rotor copy() {
+        return new Reflector(name(), permutation());
+    }
+    @Override
     void set(int posn) {
         if (posn != 0) {
             throw error("reflector has only one position");
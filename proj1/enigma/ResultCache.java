@@ -0,0 +1,238 @@
+package enigma;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Remembers the results of recent conversions, so that a message
+ *  converted again from the same machine state is not converted again.
+ *  An entry is found by a SHA-256 digest of everything that determines
+ *  the result: the machine's rotor wiring (Machine.wiring()), the
+ *  settings of its rotors, its plugboard, and the message.  A hit
+ *  returns the remembered result and sets the machine's rotors to where
+ *  converting would have left them, so later conversions are unaffected.
+ *  Since the key does not depend on names or on which configuration the
+ *  machine came from, one cache may serve any number of machines and
+ *  configurations, as in a long-running process using a ConfigWatcher.
+ *
+ *  The cache holds at most a given number of entries and of bytes of
+ *  results, evicting those used least recently.  It may be shared by
+ *  threads, each converting with its own machine.
+ *  @author Allison Wang
+ */
+class ResultCache {
+
+    /** A cache of at most MAXENTRIES results taking up at most about
+     *  MAXBYTES bytes. */
+    ResultCache(int maxEntries, long maxBytes) {
+        _results = new LruCache<>(maxEntries, maxBytes, Result::bytes);
+        _hashers = ThreadLocal.withInitial(Hasher::new);
+    }
+
+    /** Return the conversion of MSG by M, as for M.convert(MSG), leaving M
+     *  as that would. */
+    String convert(Machine m, String msg) {
+        char[] chars = msg.toCharArray();
+        return new String(chars, 0, convert(m, chars, 0, chars.length));
+    }
+
+    /** Convert CHARS[START .. END-1] in place with M, as for
+     *  M.convert(CHARS, START, END), leaving M as that would, and return
+     *  the index just past the last converted character. */
+    int convert(Machine m, char[] chars, int start, int end) {
+        Key key = _hashers.get().key(m, chars, start, end);
+        Result result;
+        synchronized (this) {
+            result = _results.get(key);
+        }
+        if (result != null) {
+            System.arraycopy(result.text, 0, chars, start,
+                             result.text.length);
+            m.setPositions(result.positions);
+            return start + result.text.length;
+        }
+        int out = m.convert(chars, start, end);
+        int[] positions = new int[m.numRotors() - 1];
+        m.getPositions(positions);
+        result = new Result(Arrays.copyOfRange(chars, start, out),
+                            positions);
+        synchronized (this) {
+            _results.put(key, result);
+        }
+        return out;
+    }
+
+    /** Return the number of results cached. */
+    synchronized int size() {
+        return _results.size();
+    }
+
+    /** Return the approximate number of bytes taken by results cached. */
+    synchronized long bytes() {
+        return _results.weight();
+    }
+
+    /** Return the number of conversions answered from the cache. */
+    synchronized long hits() {
+        return _results.hits();
+    }
+
+    /** Return the number of conversions not answered from the cache. */
+    synchronized long misses() {
+        return _results.misses();
+    }
+
+    /** Return the number of results evicted to make room for others. */
+    synchronized long evictions() {
+        return _results.evictions();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits=%d misses=%d evictions=%d entries=%d "
+                             + "bytes=%d", hits(), misses(), evictions(),
+                             size(), bytes());
+    }
+
+    /** A digest identifying a conversion. */
+    private static final class Key {
+
+        /** The key with digest DIGEST. */
+        Key(byte[] digest) {
+            _digest = digest;
+            _hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key
+                && Arrays.equals(_digest, ((Key) obj)._digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** The digest. */
+        private final byte[] _digest;
+        /** Its hash code. */
+        private final int _hash;
+    }
+
+    /** A remembered conversion. */
+    private static final class Result {
+
+        /** The result TEXT of a conversion that left the rotors at
+         *  POSITIONS. */
+        Result(char[] text, int[] positions) {
+            this.text = text;
+            this.positions = positions;
+        }
+
+        /** Return the approximate number of bytes I take up. */
+        long bytes() {
+            return OVERHEAD + 2L * text.length + 4L * positions.length;
+        }
+
+        /** Converted text. */
+        private final char[] text;
+        /** Settings of the rotors in slots 1 .. afterwards. */
+        private final int[] positions;
+    }
+
+    /** Computes keys, for one thread. */
+    private static final class Hasher {
+
+        /** A hasher with its own digest. */
+        Hasher() {
+            try {
+                _digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException excp) {
+                throw error("SHA-256 is not available");
+            }
+        }
+
+        /** Return the key for converting CHARS[START .. END-1] with M. */
+        Key key(Machine m, char[] chars, int start, int end) {
+            String wiring = m.wiring();
+            if (wiring != _wiring) {
+                _wiring = wiring;
+                _wiringDigest =
+                    _digest.digest(wiring.getBytes(StandardCharsets.UTF_8));
+                _positions = new int[m.numRotors() - 1];
+            }
+            _digest.update(_wiringDigest);
+            m.getPositions(_positions);
+            for (int p : _positions) {
+                putInt(p);
+            }
+            Permutation plugboard = m.plugboard();
+            if (plugboard != null) {
+                putString(plugboard.cycles());
+            }
+            putInt(-1);
+            for (int i = start; i < end; i += 1) {
+                putChar(chars[i]);
+            }
+            flush();
+            return new Key(_digest.digest());
+        }
+
+        /** Add X to the digest. */
+        private void putInt(int x) {
+            putChar((char) (x >>> 16));
+            putChar((char) x);
+        }
+
+        /** Add S to the digest. */
+        private void putString(String s) {
+            for (int i = 0; i < s.length(); i += 1) {
+                putChar(s.charAt(i));
+            }
+        }
+
+        /** Add CH to the digest. */
+        private void putChar(char ch) {
+            if (_used == _buffer.length) {
+                flush();
+            }
+            _buffer[_used] = (byte) (ch >>> 8);
+            _buffer[_used + 1] = (byte) ch;
+            _used += 2;
+        }
+
+        /** Pass buffered bytes to the digest. */
+        private void flush() {
+            _digest.update(_buffer, 0, _used);
+            _used = 0;
+        }
+
+        /** The digest. */
+        private final MessageDigest _digest;
+        /** Bytes not yet digested. */
+        private final byte[] _buffer = new byte[BUFFER];
+        /** Number of bytes in _buffer. */
+        private int _used;
+        /** Wiring of the last machine seen, or null. */
+        private String _wiring;
+        /** Digest of _wiring. */
+        private byte[] _wiringDigest;
+        /** Rotor settings being hashed. */
+        private int[] _positions;
+    }
+
+    /** Bytes taken by a Result besides its text and positions. */
+    private static final long OVERHEAD = 128;
+    /** Size of a Hasher's buffer, in bytes. */
+    private static final int BUFFER = 1 << 10;
+
+    /** Results, by key. */
+    private final LruCache<Key, Result> _results;
+    /** A Hasher for each thread. */
+    private final ThreadLocal<Hasher> _hashers;
+
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static enigma.TestMachines.*;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ResultCache class.
+ *  @author Allison Wang
+ */
+public class ResultCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with the naval rotors, set to AXLE, whose rotor
+     *  I is wired as WIRING. */
+    private Machine axle(String wiring) {
+        HashMap<String, String> wirings = new HashMap<>(NAVALA);
+        wirings.put("I", wiring);
+        Machine m = naval(wirings, NOTCHES);
+        AXLE.apply(m);
+        return m;
+    }
+
+    /** Return a machine over ALPHA with reflector B and rotors I and II,
+     *  inserted. */
+    private Machine small(Alphabet alpha) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      alpha)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        alpha), "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(NAVALA.get("II"),
+                                                         alpha), "E"));
+        Machine m = new Machine(alpha, 3, 2, rotors);
+        m.insertRotors(new String[] {"B", "I", "II"});
+        return m;
+    }
+
+    /** The upper-case letters with A and B exchanged. */
+    private static final Alphabet SWAPPED = new Alphabet() {
+        @Override
+        int size() {
+            return 26;
+        }
+
+        @Override
+        boolean contains(char ch) {
+            return UPPER.contains(ch);
+        }
+
+        @Override
+        char toChar(int index) {
+            char ch = UPPER.toChar(index);
+            return ch == 'A' ? 'B' : ch == 'B' ? 'A' : ch;
+        }
+
+        @Override
+        int toInt(char ch) {
+            return UPPER.toInt(ch == 'A' ? 'B' : ch == 'B' ? 'A' : ch);
+        }
+    };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkKeyIncludesAlphabetOrder() {
+        ResultCache cache = new ResultCache(16, 1 << 20);
+        assertFalse(small(UPPER).wiring().equals(small(SWAPPED).wiring()));
+        cache.convert(small(UPPER), "HELLOWORLD");
+        assertEquals(small(SWAPPED).convert("HELLOWORLD"),
+                     cache.convert(small(SWAPPED), "HELLOWORLD"));
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void checkHitLeavesMachineAsConverting() {
+        ResultCache cache = new ResultCache(16, 1 << 20);
+        Machine plain = axle(NAVALA.get("I"));
+        Machine first = axle(NAVALA.get("I"));
+        Machine second = axle(NAVALA.get("I"));
+        String expected = plain.convert("HELLOWORLD")
+            + plain.convert("HELLOWORLD");
+        String got = cache.convert(first, "HELLOWORLD")
+            + cache.convert(first, "HELLOWORLD");
+        assertEquals(expected, got);
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(got, cache.convert(second, "HELLOWORLD")
+                     + cache.convert(second, "HELLOWORLD"));
+        assertEquals(2, cache.hits());
+        assertEquals(plain.convert("AGAIN"), second.convert("AGAIN"));
+    }
+
+    @Test
+    public void checkKeyIncludesWiring() {
+        ResultCache cache = new ResultCache(16, 1 << 20);
+        Machine other = axle(NAVALA.get("V"));
+        cache.convert(axle(NAVALA.get("I")), "HELLOWORLD");
+        assertEquals(axle(NAVALA.get("V")).convert("HELLOWORLD"),
+                     cache.convert(other, "HELLOWORLD"));
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void checkBounds() {
+        ResultCache cache = new ResultCache(2, 1 << 20);
+        Machine m = axle(NAVALA.get("I"));
+        for (int i = 0; i < 5; i += 1) {
+            cache.convert(m, "HELLO");
+        }
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.evictions());
+
+        ResultCache small = new ResultCache(100, 400);
+        for (int i = 0; i < 5; i += 1) {
+            small.convert(m, "HELLOWORLD");
+        }
+        assertTrue(small.bytes() <= 400);
+        assertTrue(small.size() < 5);
+    }
+
+}
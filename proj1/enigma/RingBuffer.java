@@ -0,0 +1,119 @@
+package enigma;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A bounded, lock-free queue connecting exactly one producer thread to
+ *  exactly one consumer thread.  Each side spins briefly while the queue
+ *  is full or empty, and then parks until the other side wakes it, so
+ *  that a side waiting on a slow source uses no processor time.
+ *  @author Allison Wang
+ */
+class RingBuffer<T> {
+
+    /** An empty queue holding up to CAPACITY items, which must be a power
+     *  of two. */
+    @SuppressWarnings("unchecked")
+    RingBuffer(int capacity) {
+        assert capacity > 0 && (capacity & (capacity - 1)) == 0;
+        _items = (T[]) new Object[capacity];
+        _mask = capacity - 1;
+        _head = new AtomicLong();
+        _tail = new AtomicLong();
+    }
+
+    /** Append ITEM, waiting while the queue is full.  Throws
+     *  CancellationException if the queue has been aborted. */
+    void put(T item) {
+        long tail = _tail.get();
+        for (int spins = 0; tail - _head.get() > _mask; spins += 1) {
+            if (spins < SPIN_LIMIT) {
+                spin();
+            } else {
+                _producer = Thread.currentThread();
+                if (tail - _head.get() > _mask) {
+                    park();
+                }
+                _producer = null;
+            }
+        }
+        _items[(int) (tail & _mask)] = item;
+        _tail.set(tail + 1);
+        wake(_consumer);
+    }
+
+    /** Remove and return the oldest item, waiting while the queue is
+     *  empty.  Throws CancellationException if the queue has been
+     *  aborted. */
+    T take() {
+        long head = _head.get();
+        for (int spins = 0; head == _tail.get(); spins += 1) {
+            if (spins < SPIN_LIMIT) {
+                spin();
+            } else {
+                _consumer = Thread.currentThread();
+                if (head == _tail.get()) {
+                    park();
+                }
+                _consumer = null;
+            }
+        }
+        int index = (int) (head & _mask);
+        T item = _items[index];
+        _items[index] = null;
+        _head.set(head + 1);
+        wake(_producer);
+        return item;
+    }
+
+    /** Make all waiting and future calls of put and take that would have
+     *  to wait throw CancellationException. */
+    void abort() {
+        _aborted = true;
+        wake(_producer);
+        wake(_consumer);
+    }
+
+    /** Wait a moment while spinning. */
+    private void spin() {
+        if (_aborted) {
+            throw new CancellationException();
+        }
+        Thread.onSpinWait();
+    }
+
+    /** Wait until woken, having registered the current thread as a
+     *  waiter and found that it must still wait.  Registering before
+     *  checking, and publishing before waking, mean that no wakeup is
+     *  lost. */
+    private void park() {
+        if (_aborted) {
+            throw new CancellationException();
+        }
+        LockSupport.park(this);
+    }
+
+    /** Unpark WAITER, unless it is null. */
+    private static void wake(Thread waiter) {
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /** Number of busy-wait iterations before parking. */
+    private static final int SPIN_LIMIT = 1000;
+
+    /** Slots of the queue. */
+    private final T[] _items;
+    /** Capacity - 1, for reducing indices. */
+    private final int _mask;
+    /** Number of items ever taken and ever put. */
+    private final AtomicLong _head, _tail;
+    /** True once abort() has been called. */
+    private volatile boolean _aborted;
+    /** The producer or consumer while parked, or about to park, and
+     *  otherwise null. */
+    private volatile Thread _producer, _consumer;
+
+}
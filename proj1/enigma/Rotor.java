@@ -76,6 +76,12 @@ class Rotor {
         return permutation().wrap(inverted - setting());
     }
 
+    /** Return the positions of my notches, as characters of my
+     *  alphabet.  By default, there are none. */
+    String notches() {
+        return "";
+    }
+
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
@@ -86,6 +92,12 @@ class Rotor {
     void advance() {
     }
 
+    /** Return a new rotor like me, sharing my permutation, in its 0
+     *  setting. */
+    Rotor copy() {
+        return new Rotor(_name, _permutation);
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
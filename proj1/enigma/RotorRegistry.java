@@ -0,0 +1,60 @@
+package enigma;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** The rotors available to a machine, indexed by name.  Rotors keep the
+ *  order in which they were added, which is the order of the
+ *  configuration file.
+ *  @author Allison Wang
+ */
+class RotorRegistry {
+
+    /** An empty registry. */
+    RotorRegistry() {
+        _rotors = new LinkedHashMap<>();
+    }
+
+    /** A registry containing ROTORS, whose names must be distinct. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        this();
+        for (Rotor rotor : rotors) {
+            add(rotor);
+        }
+    }
+
+    /** Add ROTOR, whose name must not already be registered. */
+    void add(Rotor rotor) {
+        if (_rotors.putIfAbsent(rotor.name(), rotor) != null) {
+            throw error("Multiple rotors named %s", rotor.name());
+        }
+    }
+
+    /** Return the rotor named NAME, or null if there is none. */
+    Rotor get(String name) {
+        return _rotors.get(name);
+    }
+
+    /** Return a registry of new rotors like mine, sharing their
+     *  permutations, so that a second machine can use them
+     *  independently of the first. */
+    RotorRegistry copy() {
+        RotorRegistry result = new RotorRegistry();
+        for (Rotor rotor : _rotors.values()) {
+            result.add(rotor.copy());
+        }
+        return result;
+    }
+
+    /** Return all my rotors, in the order they were added. */
+    Collection<Rotor> rotors() {
+        return Collections.unmodifiableCollection(_rotors.values());
+    }
+
+    /** My rotors, keyed by name. */
+    private final LinkedHashMap<String, Rotor> _rotors;
+
+}
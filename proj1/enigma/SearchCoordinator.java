@@ -0,0 +1,453 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Searches the key space of a configuration for the settings that best
+ *  decipher a ciphertext (see KeySearch), using SearchWorker processes
+ *  on this host.  The space is cut into ranges of settings ("units")
+ *  that are handed out on demand, one at a time, to the workers over
+ *  loopback sockets, so that fast workers take more units than slow
+ *  ones.  Each worker compiles its own Machine.
+ *
+ *  When a worker dies, the unit it held goes back to the head of the
+ *  queue.  When a unit has run for much longer than units typically
+ *  take, an idle worker is given a second copy of it, and whichever
+ *  copy finishes first counts; a unit that takes longer than a hard
+ *  limit is assumed hung and its worker is killed.  Results from all
+ *  units are merged into the overall best, which is independent of
+ *  scheduling.
+ *  @author Allison Wang
+ */
+public final class SearchCoordinator {
+
+    /** Search with ARGS = [--workers=N] [--keep=K] [--units=N] CONFIG
+     *  CIPHERTEXT [PLUGBOARD ...], where CONFIG is a configuration file,
+     *  CIPHERTEXT a file holding the ciphertext, and each PLUGBOARD a
+     *  plugboard (cycles) to try.  Prints the best K (default 10)
+     *  settings, one per line with their scores, as settings lines. */
+    public static void main(String... args) {
+        try {
+            int workers = Runtime.getRuntime().availableProcessors();
+            int keep = KEEP;
+            int units = 0;
+            int first = 0;
+            for (; first < args.length && args[first].startsWith("--");
+                 first += 1) {
+                String[] option = args[first].split("=", 2);
+                if (option.length != 2) {
+                    throw error("unknown option: %s", args[first]);
+                }
+                int value = Integer.parseInt(option[1]);
+                switch (option[0]) {
+                case "--workers":
+                    workers = value;
+                    break;
+                case "--keep":
+                    keep = value;
+                    break;
+                case "--units":
+                    units = value;
+                    break;
+                default:
+                    throw error("unknown option: %s", args[first]);
+                }
+            }
+            if (args.length - first < 2 || workers <= 0) {
+                throw error("usage: SearchCoordinator [--workers=N] "
+                            + "[--keep=K] [--units=N] CONFIG CIPHERTEXT "
+                            + "[PLUGBOARD ...]");
+            }
+            String ciphertext;
+            try {
+                ciphertext = new String(
+                    Files.readAllBytes(Paths.get(args[first + 1])));
+            } catch (IOException excp) {
+                throw error("could not open %s", args[first + 1]);
+            }
+            List<String> plugboards = Arrays.asList(
+                Arrays.copyOfRange(args, first + 2, args.length));
+            SearchCoordinator coordinator = new SearchCoordinator(
+                args[first], ciphertext, plugboards, keep,
+                units > 0 ? units : workers * UNITS_PER_WORKER);
+            for (int i = 0; i < workers; i += 1) {
+                coordinator.addWorker();
+            }
+            for (KeySearch.Result r : coordinator.run()) {
+                System.out.printf("%d %s%n", r.score(),
+                                  coordinator.space().get(r.index()));
+            }
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A coordinator searching the key space of the configuration file
+     *  CONFIG, trying each of PLUGBOARDS, for the KEEP settings that best
+     *  decipher CIPHERTEXT, in about UNITS units. */
+    SearchCoordinator(String config, String ciphertext,
+                      List<String> plugboards, int keep, int units) {
+        _config = new File(config).getAbsolutePath();
+        _ciphertext = ciphertext;
+        _plugboards = new ArrayList<>(plugboards);
+        _keep = keep;
+        _space = new KeySpace(Main.configure(_config), _plugboards);
+        if (keep <= 0 || units <= 0) {
+            throw error("bad search parameters");
+        }
+        long size = _space.size();
+        long step = Math.max(1, (size + units - 1) / units);
+        ArrayList<Unit> all = new ArrayList<>();
+        for (long lo = 0; lo < size; lo += step) {
+            all.add(new Unit(lo, Math.min(size, lo + step)));
+        }
+        _units = all.toArray(new Unit[0]);
+        _pending = new ArrayDeque<>(all);
+        _best = Collections.emptyList();
+        _processes = new ArrayList<>();
+        _handlers = new ArrayList<>();
+        try {
+            _server = new ServerSocket(0, 0,
+                                       InetAddress.getLoopbackAddress());
+        } catch (IOException excp) {
+            throw error("could not listen for workers: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the key space I search. */
+    KeySpace space() {
+        return _space;
+    }
+
+    /** Start a SearchWorker process. */
+    void addWorker() {
+        addWorker(SearchWorker.class);
+    }
+
+    /** Start a worker process running the main method of MAIN, which
+     *  takes the arguments of SearchWorker's followed by OPTIONS. */
+    synchronized void addWorker(Class<?> main, String... options) {
+        String java = System.getProperty("java.home") + File.separator
+            + "bin" + File.separator + "java";
+        ArrayList<String> command = new ArrayList<>(Arrays.asList(
+            java, "-cp", System.getProperty("java.class.path"),
+            main.getName(),
+            _server.getInetAddress().getHostAddress(),
+            Integer.toString(_server.getLocalPort()),
+            Integer.toString(_processes.size())));
+        command.addAll(Arrays.asList(options));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            Process process = builder.start();
+            _processes.add(process);
+            _alive += 1;
+            process.onExit().thenRun(this::workerExited);
+        } catch (IOException excp) {
+            throw error("could not start worker: %s", excp.getMessage());
+        }
+    }
+
+    /** Search the whole key space with the workers added so far and
+     *  return the best results, best first.  Stops the workers. */
+    List<KeySearch.Result> run() {
+        Thread acceptor = new Thread(this::accept, "search-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (_finished < _units.length) {
+                    if (_alive == 0) {
+                        throw error("all search workers failed");
+                    }
+                    wait();
+                }
+                return _best;
+            }
+        } catch (InterruptedException excp) {
+            throw error("search interrupted");
+        } finally {
+            shutDown();
+        }
+    }
+
+    /** Return the number of times a unit was handed out again because
+     *  its worker died or was slow. */
+    synchronized int reassigned() {
+        return _reassigned;
+    }
+
+    /** Accept worker connections, starting a handler for each, until the
+     *  server socket is closed. */
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = _server.accept();
+                Handler handler = new Handler(socket);
+                synchronized (this) {
+                    _handlers.add(handler);
+                }
+                handler.start();
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Close the server and all connections and kill all workers. */
+    private void shutDown() {
+        try {
+            _server.close();
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+        ArrayList<Handler> handlers;
+        synchronized (this) {
+            handlers = new ArrayList<>(_handlers);
+            _stopped = true;
+            notifyAll();
+        }
+        for (Handler handler : handlers) {
+            handler.close();
+        }
+        for (Process process : _processes) {
+            process.destroy();
+        }
+    }
+
+    /** Record that a worker process has exited. */
+    private synchronized void workerExited() {
+        _alive -= 1;
+        notifyAll();
+    }
+
+    /** Return the next unit to hand to an idle worker, waiting if there
+     *  is none yet, or null if the search is over. */
+    private synchronized Unit next() throws InterruptedException {
+        while (true) {
+            if (_stopped || _finished == _units.length) {
+                return null;
+            }
+            Unit unit = _pending.poll();
+            if (unit != null) {
+                if (!unit.done) {
+                    unit.copies += 1;
+                    unit.started = System.nanoTime();
+                    return unit;
+                }
+                continue;
+            }
+            long wait = IDLE_WAIT;
+            if (_finished > 0) {
+                long now = System.nanoTime();
+                long slow = Math.max(MIN_SLOW,
+                                     SLOW_FACTOR * _busy / _finished);
+                for (Unit u : _units) {
+                    if (!u.done && u.copies == 1) {
+                        long age = now - u.started;
+                        if (age >= slow) {
+                            u.copies += 1;
+                            _reassigned += 1;
+                            return u;
+                        }
+                        wait = Math.min(wait, slow - age);
+                    }
+                }
+            }
+            wait(Math.max(1, wait / 1_000_000));
+        }
+    }
+
+    /** Record that UNIT produced RESULTS in NANOS nanoseconds. */
+    private synchronized void complete(Unit unit,
+                                       List<KeySearch.Result> results,
+                                       long nanos) {
+        unit.copies -= 1;
+        if (!unit.done) {
+            unit.done = true;
+            _finished += 1;
+            _busy += nanos;
+            _best = KeySearch.merge(_best, results, _keep);
+        }
+        notifyAll();
+    }
+
+    /** Record that a copy of UNIT was lost with its worker. */
+    private synchronized void failed(Unit unit) {
+        unit.copies -= 1;
+        if (!unit.done && unit.copies == 0) {
+            _pending.addFirst(unit);
+            _reassigned += 1;
+        }
+        notifyAll();
+    }
+
+    /** A range of settings to search. */
+    private static class Unit {
+        /** Settings LO .. HI-1. */
+        Unit(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /** Range of settings. */
+        private final long lo, hi;
+        /** Number of workers currently searching me. */
+        private int copies;
+        /** Time the first current copy was handed out. */
+        private long started;
+        /** True once my results are in. */
+        private boolean done;
+    }
+
+    /** Serves one worker connection. */
+    private class Handler extends Thread {
+
+        /** A handler for the worker connected on SOCKET. */
+        Handler(Socket socket) {
+            super("search-worker");
+            setDaemon(true);
+            _socket = socket;
+        }
+
+        @Override
+        public void run() {
+            Unit unit = null;
+            try {
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(_socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(_socket.getOutputStream()));
+                _id = in.readInt();
+                SearchWorker.writeString(out, _config);
+                SearchWorker.writeString(out, _ciphertext);
+                out.writeInt(_plugboards.size());
+                for (String plugboard : _plugboards) {
+                    SearchWorker.writeString(out, plugboard);
+                }
+                out.writeInt(_keep);
+                _socket.setSoTimeout(UNIT_LIMIT);
+                while ((unit = next()) != null) {
+                    long start = System.nanoTime();
+                    out.writeLong(unit.lo);
+                    out.writeLong(unit.hi);
+                    out.flush();
+                    if (in.readLong() != unit.lo) {
+                        throw new IOException("reply out of order");
+                    }
+                    int n = in.readInt();
+                    ArrayList<KeySearch.Result> results = new ArrayList<>(n);
+                    for (int i = 0; i < n; i += 1) {
+                        results.add(new KeySearch.Result(in.readLong(),
+                                                         in.readLong()));
+                    }
+                    complete(unit, results, System.nanoTime() - start);
+                    unit = null;
+                }
+                out.writeLong(-1);
+                out.flush();
+            } catch (SocketTimeoutException excp) {
+                kill();
+            } catch (IOException | InterruptedException excp) {
+                /* The worker died or the search is over. */
+            } finally {
+                if (unit != null) {
+                    failed(unit);
+                }
+                close();
+            }
+        }
+
+        /** Kill my worker, which has hung. */
+        private void kill() {
+            synchronized (SearchCoordinator.this) {
+                if (_id >= 0 && _id < _processes.size()) {
+                    _processes.get(_id).destroyForcibly();
+                }
+            }
+        }
+
+        /** Close my connection. */
+        void close() {
+            try {
+                _socket.close();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        }
+
+        /** Connection to the worker. */
+        private final Socket _socket;
+        /** The worker's id, or -1 until known. */
+        private volatile int _id = -1;
+    }
+
+    /** Default number of results kept. */
+    private static final int KEEP = 10;
+    /** Default number of units per worker, enough for fast workers to
+     *  take over the work of slow ones. */
+    private static final int UNITS_PER_WORKER = 16;
+    /** Longest wait in nanoseconds between checks for slow units. */
+    private static final long IDLE_WAIT = 100_000_000L;
+    /** A unit running this many times longer than the mean time per
+     *  unit is given to a second worker. */
+    private static final long SLOW_FACTOR = 4;
+    /** Minimum time in nanoseconds before a unit is considered slow. */
+    private static final long MIN_SLOW = 50_000_000L;
+    /** Milliseconds after which a unit is assumed hung. */
+    private static final int UNIT_LIMIT = 600_000;
+
+    /** Absolute name of the configuration file. */
+    private final String _config;
+    /** Text to decipher. */
+    private final String _ciphertext;
+    /** Plugboards tried. */
+    private final List<String> _plugboards;
+    /** Number of results kept. */
+    private final int _keep;
+    /** The space searched. */
+    private final KeySpace _space;
+    /** All units. */
+    private final Unit[] _units;
+    /** Units waiting for a worker. */
+    private final ArrayDeque<Unit> _pending;
+    /** Listens for workers. */
+    private final ServerSocket _server;
+    /** Worker processes, by id. */
+    private final ArrayList<Process> _processes;
+    /** Connection handlers. */
+    private final ArrayList<Handler> _handlers;
+    /** Best results so far. */
+    private List<KeySearch.Result> _best;
+    /** Number of units done. */
+    private int _finished;
+    /** Total time in nanoseconds taken by the units done. */
+    private long _busy;
+    /** Number of units handed out again. */
+    private int _reassigned;
+    /** Number of worker processes still running. */
+    private int _alive;
+    /** True once the search has ended. */
+    private boolean _stopped;
+
+}
@@ -0,0 +1,204 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SearchCoordinator class, which
+ *  start worker processes on this host.
+ *  @author Allison Wang
+ */
+public class SearchCoordinatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A plaintext long enough for its letter frequencies to show. */
+    private static final String PLAIN =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHERINITSCASEITLAYCOMPACTLY"
+        + "FOLDEDINTONEARLYNOTHINGBUTHEOPENEDOUTTHEHINGESPUSHEDAND";
+
+    /** Setting that enciphers PLAIN in the test configuration. */
+    private static final MachineSettings KEY = new MachineSettings(
+        new String[] {"B", "III", "I"}, "QC", "");
+
+    /** Return the name of a new configuration file with reflector B and
+     *  moving rotors I, II and III in three slots. */
+    private String writeConfig() throws IOException {
+        File file = File.createTempFile("search", ".conf");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("A-Z");
+            out.println("3 2");
+            out.println("B R " + NAVALA.get("B"));
+            out.println("I MQ " + NAVALA.get("I"));
+            out.println("II ME " + NAVALA.get("II"));
+            out.println("III MV " + NAVALA.get("III"));
+        }
+        return file.getPath();
+    }
+
+    /** Return PLAIN enciphered with KEY on the machine of CONFIG. */
+    private String cipher(String config) {
+        Machine m = Main.configure(config);
+        KEY.apply(m);
+        return m.convert(PLAIN);
+    }
+
+    /** Return the best KEEP results for CIPHERTEXT under CONFIG, found
+     *  in this process. */
+    private List<KeySearch.Result> local(String config, String ciphertext,
+                                         int keep) {
+        Machine m = Main.configure(config);
+        KeySpace space = new KeySpace(m, Collections.emptyList());
+        return new KeySearch(m, space, ciphertext, keep)
+            .search(0, space.size());
+    }
+
+    /** A SearchWorker whose arguments may be followed by --fail-after=N,
+     *  to die abruptly on receiving its (N+1)st range, or --delay=MS, to
+     *  sleep MS milliseconds before searching each range. */
+    public static final class FaultyWorker {
+
+        /** Run a worker with ARGS = HOST PORT ID [OPTIONS]. */
+        public static void main(String... args) {
+            int failAfter = -1;
+            long delay = 0;
+            for (int i = 3; i < args.length; i += 1) {
+                if (args[i].startsWith("--fail-after=")) {
+                    failAfter = Integer.parseInt(
+                        args[i].substring("--fail-after=".length()));
+                } else if (args[i].startsWith("--delay=")) {
+                    delay = Long.parseLong(
+                        args[i].substring("--delay=".length()));
+                }
+            }
+            final int fail = failAfter;
+            final long sleep = delay;
+            new SearchWorker(n -> {
+                if (n == fail) {
+                    Runtime.getRuntime().halt(1);
+                }
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                }
+            }).run(args[0], Integer.parseInt(args[1]),
+                   Integer.parseInt(args[2]));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkLocalSearchFindsKey() throws IOException {
+        String config = writeConfig();
+        List<KeySearch.Result> best = local(config, cipher(config), 3);
+        Machine m = Main.configure(config);
+        KeySpace space = new KeySpace(m, Collections.emptyList());
+        assertEquals(KEY.toString(),
+                     space.get(best.get(0).index()).toString());
+        assertEquals(3, best.size());
+        assertTrue(best.get(0).score() > best.get(1).score());
+    }
+
+    @Test
+    public void checkPlugboardScores() throws IOException {
+        String config = writeConfig();
+        String ciphertext = cipher(config);
+        List<String> plugboards =
+            Arrays.asList("", "(AB) (CD)", "(QE) (XZ) (MN)", "(FR)");
+        Machine m = Main.configure(config);
+        KeySpace space = new KeySpace(m, plugboards);
+        KeySearch search = new KeySearch(m, space, ciphertext, 1);
+        Machine direct = Main.configure(config);
+        for (long index = 0; index < space.size(); index += 37) {
+            space.get(index).apply(direct);
+            int[] counts = new int[26];
+            for (int i = 0; i < ciphertext.length(); i += 1) {
+                counts[direct.convert(UPPER.toInt(ciphertext.charAt(i)))]
+                    += 1;
+            }
+            long score = 0;
+            for (int count : counts) {
+                score += (long) count * (count - 1);
+            }
+            assertEquals(score, search.score(index));
+        }
+    }
+
+    @Test
+    public void checkMergeIndependentOfSplit() throws IOException {
+        String config = writeConfig();
+        String ciphertext = cipher(config);
+        Machine m = Main.configure(config);
+        KeySpace space = new KeySpace(m, Collections.emptyList());
+        KeySearch search = new KeySearch(m, space, ciphertext, 5);
+        List<KeySearch.Result> merged = Collections.emptyList();
+        for (long lo = 0; lo < space.size(); lo += 777) {
+            merged = KeySearch.merge(
+                merged, search.search(lo, Math.min(space.size(), lo + 777)),
+                5);
+        }
+        assertEquals(local(config, ciphertext, 5), merged);
+    }
+
+    @Test
+    public void checkWorkersMatchLocal() throws IOException {
+        String config = writeConfig();
+        String ciphertext = cipher(config);
+        SearchCoordinator coordinator = new SearchCoordinator(
+            config, ciphertext, Collections.emptyList(), 5, 12);
+        coordinator.addWorker();
+        coordinator.addWorker();
+        assertEquals(local(config, ciphertext, 5), coordinator.run());
+    }
+
+    @Test
+    public void checkDeadWorker() throws IOException {
+        String config = writeConfig();
+        String ciphertext = cipher(config);
+        SearchCoordinator coordinator = new SearchCoordinator(
+            config, ciphertext, Collections.emptyList(), 5, 12);
+        coordinator.addWorker(FaultyWorker.class, "--fail-after=1");
+        coordinator.addWorker();
+        assertEquals(local(config, ciphertext, 5), coordinator.run());
+    }
+
+    @Test
+    public void checkSlowWorker() throws IOException {
+        String config = writeConfig();
+        String ciphertext = cipher(config);
+        SearchCoordinator coordinator = new SearchCoordinator(
+            config, ciphertext, Collections.emptyList(), 5, 6);
+        coordinator.addWorker(FaultyWorker.class, "--delay=20000");
+        coordinator.addWorker();
+        assertEquals(local(config, ciphertext, 5), coordinator.run());
+        assertTrue(coordinator.reassigned() > 0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkAllWorkersDead() throws IOException {
+        String config = writeConfig();
+        SearchCoordinator coordinator = new SearchCoordinator(
+            config, cipher(config), Collections.emptyList(), 5, 12);
+        coordinator.addWorker(FaultyWorker.class, "--fail-after=0");
+        coordinator.run();
+    }
+
+}
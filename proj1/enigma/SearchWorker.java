@@ -0,0 +1,120 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static enigma.EnigmaException.*;
+
+/** A worker process for a SearchCoordinator.  The worker connects to the
+ *  coordinator, receives the job (configuration file, ciphertext,
+ *  plugboards and number of results to keep), compiles its own Machine
+ *  from the configuration, and then searches each range of the key
+ *  space it is sent, replying with that range's best results.
+ *
+ *  The protocol, over one socket in both directions, is:
+ *  <pre>
+ *  worker:      ID
+ *  coordinator: CONFIG CIPHERTEXT NPLUGBOARDS PLUGBOARD... KEEP
+ *  then repeatedly
+ *  coordinator: LO HI           (or -1 to stop)
+ *  worker:      LO N (INDEX SCORE) x N
+ *  </pre>
+ *  where strings are an int byte count followed by UTF-8 bytes, ID,
+ *  NPLUGBOARDS, KEEP and N are ints, and the rest are longs.
+ *  @author Allison Wang
+ */
+public final class SearchWorker {
+
+    /** Run a worker with ARGS = HOST PORT ID, connecting to the
+     *  coordinator at HOST:PORT and identifying itself as worker ID. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 3) {
+                throw error("usage: SearchWorker HOST PORT ID");
+            }
+            new SearchWorker(n -> { }).run(args[0],
+                                           Integer.parseInt(args[1]),
+                                           Integer.parseInt(args[2]));
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A worker that calls RECEIVED with the number of ranges it has
+     *  received before each one, so that tests can make it fail or
+     *  stall. */
+    SearchWorker(IntConsumer received) {
+        _received = received;
+    }
+
+    /** Connect to the coordinator at HOST:PORT as worker ID and serve it
+     *  until told to stop. */
+    void run(String host, int port, int id) {
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(id);
+            out.flush();
+
+            String config = readString(in);
+            String ciphertext = readString(in);
+            int n = in.readInt();
+            List<String> plugboards = new ArrayList<>(n);
+            for (int i = 0; i < n; i += 1) {
+                plugboards.add(readString(in));
+            }
+            int keep = in.readInt();
+            Machine m = Main.configure(config);
+            KeySearch search = new KeySearch(
+                m, new KeySpace(m, plugboards), ciphertext, keep);
+
+            int ranges = 0;
+            for (long lo = in.readLong(); lo >= 0; lo = in.readLong()) {
+                long hi = in.readLong();
+                _received.accept(ranges);
+                ranges += 1;
+                List<KeySearch.Result> best = search.search(lo, hi);
+                out.writeLong(lo);
+                out.writeInt(best.size());
+                for (KeySearch.Result r : best) {
+                    out.writeLong(r.index());
+                    out.writeLong(r.score());
+                }
+                out.flush();
+            }
+        } catch (IOException excp) {
+            throw error("lost connection to coordinator: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Write S to OUT as a byte count and UTF-8 bytes. */
+    static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return a string written by writeString, read from IN. */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Called with the number of ranges received before each range. */
+    private final IntConsumer _received;
+
+}
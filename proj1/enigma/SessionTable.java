@@ -0,0 +1,337 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** Independent cipher sessions over one configuration, each kept in a
+ *  few bytes of off-heap memory instead of as a Machine.  A session
+ *  record holds the index of its rotor order, the index of its
+ *  plugboard, and its rotor positions packed into one or two bytes each.
+ *  Rotor orders and plugboards are interned, and all sessions share the
+ *  configuration's compiled wiring tables.  An interned plugboard is
+ *  dropped, and its index reused, when the last session using it is
+ *  closed, so that a long-running table with a stream of distinct
+ *  plugboards holds only those of its open sessions.  To convert text for a
+ *  session, the converting thread loads the record into a scratch
+ *  Machine of its own, converts, and stores the new positions back.
+ *
+ *  Opening and closing sessions are synchronized; conversions for
+ *  different sessions may run concurrently, but a single session must
+ *  not be converted by two threads at once.
+ *  @author Allison Wang
+ */
+class SessionTable {
+
+    /** A table with room for CAPACITY sessions of machines configured
+     *  like CONFIG (alphabet, slots, pawls and available rotors). */
+    SessionTable(Machine config, int capacity) {
+        _config = config;
+        _slots = config.numRotors() - 1;
+        _wide = config.alphabet().size() > BYTE_LIMIT;
+        int width = _wide ? 2 : 1;
+        _recordSize = Math.max(MIN_RECORD, POSITIONS + width * _slots);
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE / _recordSize) {
+            throw error("cannot hold %d sessions", capacity);
+        }
+        _capacity = capacity;
+        _records = ByteBuffer.allocateDirect(capacity * _recordSize);
+        _orders = new CopyOnWriteArrayList<>();
+        _orderIds = new HashMap<>();
+        _plugboards = new CopyOnWriteArrayList<>();
+        _plugboardCycles = new CopyOnWriteArrayList<>();
+        _plugboardIds = new HashMap<>();
+        _plugboardUses = new int[1];
+        _freePlugboards = new ArrayDeque<>();
+        _plugboards.add(NO_PLUGBOARD);
+        _plugboardCycles.add("");
+        _plugboardIds.put("", 0);
+        _free = NONE;
+        _scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    /** Open a new session initially in SETTINGS, returning its id. */
+    synchronized int open(MachineSettings settings) {
+        int id;
+        if (_free != NONE) {
+            id = _free;
+            _free = _records.getInt(offset(id) + POSITIONS);
+        } else if (_used < _capacity) {
+            id = _used;
+            _used += 1;
+        } else {
+            throw error("session table full");
+        }
+        try {
+            store(id, settings, false);
+        } catch (EnigmaException excp) {
+            release(id);
+            throw excp;
+        }
+        _open += 1;
+        return id;
+    }
+
+    /** Close session ID, making its id available for reuse. */
+    synchronized void close(int id) {
+        int base = checkOpen(id);
+        releasePlugboard(_records.getInt(base + PLUGBOARD));
+        release(id);
+        _open -= 1;
+    }
+
+    /** Put open session ID in SETTINGS. */
+    void reset(int id, MachineSettings settings) {
+        checkOpen(id);
+        store(id, settings, true);
+    }
+
+    /** Store SETTINGS, after checking them, in the record of session
+     *  ID, which holds an open session's plugboard to be released if
+     *  REPLACING. */
+    private void store(int id, MachineSettings settings, boolean replacing) {
+        Scratch scratch = _scratch.get();
+        scratch.order = NONE;
+        scratch.machine.insertRotors(settings.rotors());
+        scratch.machine.setRotors(settings.positions());
+        scratch.machine.getPositions(scratch.positions);
+        int base = offset(id);
+        synchronized (this) {
+            int order = internOrder(settings.rotors());
+            int plugboard = internPlugboard(settings.plugboard());
+            if (replacing) {
+                releasePlugboard(_records.getInt(base + PLUGBOARD));
+            }
+            _records.putInt(base + ORDER, order);
+            _records.putInt(base + PLUGBOARD, plugboard);
+            scratch.order = order;
+        }
+        storePositions(base, scratch.positions);
+    }
+
+    /** Convert CHARS[START .. END-1] in place for session ID, as
+     *  Machine.convert(char[], int, int) does, advancing the session's
+     *  rotors.  Returns the index just past the last converted
+     *  character. */
+    int convert(int id, char[] chars, int start, int end) {
+        int base = checkOpen(id);
+        Scratch scratch = load(base);
+        try {
+            return scratch.machine.convert(chars, start, end);
+        } finally {
+            scratch.machine.getPositions(scratch.positions);
+            storePositions(base, scratch.positions);
+        }
+    }
+
+    /** Return the result of converting MSG for session ID. */
+    String convert(int id, String msg) {
+        char[] chars = msg.toCharArray();
+        return new String(chars, 0, convert(id, chars, 0, chars.length));
+    }
+
+    /** Return the current settings of session ID. */
+    MachineSettings settings(int id) {
+        int base = checkOpen(id);
+        String[] rotors = _orders.get(_records.getInt(base + ORDER));
+        String plugboard =
+            _plugboardCycles.get(_records.getInt(base + PLUGBOARD));
+        Alphabet alpha = _config.alphabet();
+        char[] positions = new char[_slots];
+        for (int i = 0; i < _slots; i += 1) {
+            positions[i] = alpha.toChar(loadPosition(base, i));
+        }
+        return new MachineSettings(rotors, new String(positions), plugboard);
+    }
+
+    /** Return the number of open sessions. */
+    synchronized int size() {
+        return _open;
+    }
+
+    /** Return the maximum number of sessions. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of bytes of session state per session. */
+    int recordSize() {
+        return _recordSize;
+    }
+
+    /** Return this thread's scratch machine, loaded with the session
+     *  whose record starts at BASE. */
+    private Scratch load(int base) {
+        Scratch scratch = _scratch.get();
+        int order = _records.getInt(base + ORDER);
+        if (order != scratch.order) {
+            scratch.machine.insertRotors(_orders.get(order));
+            scratch.order = order;
+        }
+        Permutation plugboard =
+            _plugboards.get(_records.getInt(base + PLUGBOARD));
+        for (int i = 0; i < _slots; i += 1) {
+            scratch.positions[i] = loadPosition(base, i);
+        }
+        scratch.machine.setPositions(scratch.positions);
+        scratch.machine.setPlugboard(plugboard == NO_PLUGBOARD ? null
+                                     : plugboard);
+        return scratch;
+    }
+
+    /** Return the position of slot I + 1 in the record at BASE. */
+    private int loadPosition(int base, int i) {
+        if (_wide) {
+            return _records.getChar(base + POSITIONS + 2 * i);
+        }
+        return _records.get(base + POSITIONS + i) & 0xff;
+    }
+
+    /** Store POSITIONS into the record at BASE. */
+    private void storePositions(int base, int[] positions) {
+        for (int i = 0; i < _slots; i += 1) {
+            if (_wide) {
+                _records.putChar(base + POSITIONS + 2 * i,
+                                 (char) positions[i]);
+            } else {
+                _records.put(base + POSITIONS + i, (byte) positions[i]);
+            }
+        }
+    }
+
+    /** Return the offset of the record of open session ID. */
+    private int checkOpen(int id) {
+        if (id < 0 || id >= _used
+            || _records.getInt(offset(id) + ORDER) == NONE) {
+            throw error("no open session %d", id);
+        }
+        return offset(id);
+    }
+
+    /** Return the offset of the record of session ID. */
+    private int offset(int id) {
+        return id * _recordSize;
+    }
+
+    /** Mark session ID as free and push it on the free list. */
+    private void release(int id) {
+        _records.putInt(offset(id) + ORDER, NONE);
+        _records.putInt(offset(id) + POSITIONS, _free);
+        _free = id;
+    }
+
+    /** Return the index of rotor order ROTORS, adding it if new. */
+    private int internOrder(String[] rotors) {
+        List<String> key = Arrays.asList(rotors);
+        Integer id = _orderIds.get(key);
+        if (id == null) {
+            id = _orders.size();
+            _orders.add(rotors.clone());
+            _orderIds.put(key, id);
+        }
+        return id;
+    }
+
+    /** Return the index of plugboard CYCLES, adding it if new, and
+     *  count one more session using it. */
+    private int internPlugboard(String cycles) {
+        Integer id = _plugboardIds.get(cycles);
+        if (id == null) {
+            Permutation p = new Permutation(cycles, _config.alphabet());
+            p.permute(0);
+            id = _freePlugboards.poll();
+            if (id == null) {
+                id = _plugboards.size();
+                _plugboards.add(p);
+                _plugboardCycles.add(cycles);
+                if (id == _plugboardUses.length) {
+                    _plugboardUses = Arrays.copyOf(_plugboardUses, 2 * id);
+                }
+            } else {
+                _plugboards.set(id, p);
+                _plugboardCycles.set(id, cycles);
+            }
+            _plugboardIds.put(cycles, id);
+        }
+        if (id != 0) {
+            _plugboardUses[id] += 1;
+        }
+        return id;
+    }
+
+    /** Count one session fewer using plugboard number ID, dropping the
+     *  plugboard when none is left. */
+    private void releasePlugboard(int id) {
+        if (id == 0) {
+            return;
+        }
+        _plugboardUses[id] -= 1;
+        if (_plugboardUses[id] == 0) {
+            _plugboardIds.remove(_plugboardCycles.get(id));
+            _plugboards.set(id, null);
+            _plugboardCycles.set(id, null);
+            _freePlugboards.push(id);
+        }
+    }
+
+    /** Per-thread state for converting sessions. */
+    private class Scratch {
+        /** A machine with its own rotors. */
+        private final Machine machine = _config.copy();
+        /** Index of the rotor order inserted in machine, or NONE. */
+        private int order = NONE;
+        /** Positions being loaded or stored. */
+        private final int[] positions = new int[_slots];
+    }
+
+    /** Offsets of the fields of a record. */
+    private static final int ORDER = 0, PLUGBOARD = 4, POSITIONS = 8;
+    /** Minimum record size, which leaves room for a free-list link. */
+    private static final int MIN_RECORD = POSITIONS + 4;
+    /** Largest alphabet whose positions fit in one byte. */
+    private static final int BYTE_LIMIT = 256;
+    /** Order index of a free record, and the end of the free list. */
+    private static final int NONE = -1;
+    /** Placeholder for the absent plugboard in _plugboards. */
+    private static final Permutation NO_PLUGBOARD =
+        new Permutation("", new CharacterRange('A', 'A'));
+
+    /** The configuration whose sessions I hold. */
+    private final Machine _config;
+    /** Number of positions per session. */
+    private final int _slots;
+    /** True if positions take two bytes. */
+    private final boolean _wide;
+    /** Bytes per record, and maximum number of records. */
+    private final int _recordSize, _capacity;
+    /** Session records. */
+    private final ByteBuffer _records;
+    /** Interned rotor orders. */
+    private final CopyOnWriteArrayList<String[]> _orders;
+    /** Index of each interned rotor order. */
+    private final HashMap<List<String>, Integer> _orderIds;
+    /** Interned plugboards, NO_PLUGBOARD standing for none. */
+    private final CopyOnWriteArrayList<Permutation> _plugboards;
+    /** Cycles of each interned plugboard. */
+    private final CopyOnWriteArrayList<String> _plugboardCycles;
+    /** Index of each interned plugboard, by cycles. */
+    private final HashMap<String, Integer> _plugboardIds;
+    /** Number of open sessions using each interned plugboard. */
+    private int[] _plugboardUses;
+    /** Indices of dropped plugboards, for reuse. */
+    private final ArrayDeque<Integer> _freePlugboards;
+    /** Number of records ever used. */
+    private volatile int _used;
+    /** Number of open sessions. */
+    private int _open;
+    /** First free record below _used, or NONE. */
+    private int _free;
+    /** Scratch state for each converting thread. */
+    private final ThreadLocal<Scratch> _scratch;
+
+}
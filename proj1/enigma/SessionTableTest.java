@@ -0,0 +1,130 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static enigma.TestMachines.*;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SessionTable class.
+ *  @author Allison Wang
+ */
+public class SessionTableTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Settings AXLE with rotors B Beta III IV I and plugboard PLUGS. */
+    private MachineSettings axle(String plugs) {
+        return new MachineSettings(AXLE.rotors(), AXLE.positions(), plugs);
+    }
+
+    /** Return the plugboard, in cycle notation, swapping the pairs of
+     *  letters given by the base-26 digits of N. */
+    private String plugboard(int n) {
+        StringBuilder cycles = new StringBuilder();
+        boolean[] used = new boolean[26];
+        for (int k = n; k > 0; k /= 26) {
+            int a = k % 26, b = (a + 1 + k / 26 % 25) % 26;
+            if (used[a] || used[b]) {
+                continue;
+            }
+            used[a] = used[b] = true;
+            cycles.append(cycles.length() == 0 ? "(" : " (")
+                .append(UPPER.toChar(a)).append(UPPER.toChar(b)).append(')');
+        }
+        return cycles.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkInterleavedSessions() {
+        SessionTable table = new SessionTable(naval(), 4);
+        MachineSettings[] settings = {
+            axle("(HQ) (EX) (IP) (TR) (BY)"), axle(""),
+            new MachineSettings(new String[] {"B", "Beta", "I", "II", "V"},
+                                "QEVZ", "(AB)")
+        };
+        int[] ids = new int[settings.length];
+        Machine[] machines = new Machine[settings.length];
+        for (int i = 0; i < settings.length; i += 1) {
+            ids[i] = table.open(settings[i]);
+            machines[i] = naval();
+            settings[i].apply(machines[i]);
+        }
+        String[] chunks = {"FROMHISSHOULDER", "HIAWATHA", "TOOKTHECAMERA",
+                           "OFROSEWOOD", "MADEOFSLIDINGFOLDINGROSEWOOD"};
+        for (String chunk : chunks) {
+            for (int i = 0; i < settings.length; i += 1) {
+                assertEquals(machines[i].convert(chunk),
+                             table.convert(ids[i], chunk));
+            }
+        }
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void checkSettingsRoundTrip() {
+        SessionTable table = new SessionTable(naval(), 2);
+        int id = table.open(axle("(AB)"));
+        assertEquals("* B Beta III IV I AXLE (AB)",
+                     table.settings(id).toString());
+        table.convert(id, "A");
+        assertEquals("AXLF", table.settings(id).positions());
+        assertTrue(Arrays.asList(table.settings(id).rotors())
+                   .contains("Beta"));
+    }
+
+    @Test
+    public void checkReuse() {
+        SessionTable table = new SessionTable(naval(), 1);
+        int id = table.open(axle(""));
+        table.close(id);
+        assertEquals(id, table.open(axle("(AB)")));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void checkManyPlugboards() {
+        SessionTable table = new SessionTable(naval(), 4);
+        int kept = table.open(axle("(AZ)"));
+        HashSet<String> distinct = new HashSet<>();
+        for (int n = 1; distinct.size() <= Short.MAX_VALUE + 1; n += 1) {
+            String plugs = plugboard(n);
+            if (distinct.add(plugs)) {
+                int id = table.open(axle(plugs));
+                assertEquals(plugs, table.settings(id).plugboard());
+                table.close(id);
+            }
+        }
+        assertEquals(1, table.size());
+        assertEquals("(AZ)", table.settings(kept).plugboard());
+        table.close(kept);
+        int id = table.open(axle("(AB) (CD)"));
+        assertEquals(axle("(AB) (CD)").toString(),
+                     table.settings(id).toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkFull() {
+        SessionTable table = new SessionTable(naval(), 1);
+        table.open(axle(""));
+        table.open(axle(""));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkClosed() {
+        SessionTable table = new SessionTable(naval(), 1);
+        table.close(table.open(axle("")));
+        table.convert(0, "A");
+    }
+}
@@ -0,0 +1,67 @@
+package enigma;
+
+/** A read-only view of the rotors in a machine's slots, as handed to
+ *  Engine.kernel: for each slot, its rotor's wiring as maps on alphabet
+ *  indices, whether it rotates, and where its notches are.  Slot 0
+ *  holds the reflector, and slots firstPawl() and up have pawls.
+ *  @author Allison Wang
+ */
+public final class SlotTables {
+
+    /** A view of the rotors SLOTS, the last NUMPAWLS of which have
+     *  pawls. */
+    SlotTables(Rotor[] slots, int numPawls) {
+        _slots = slots.clone();
+        _first = Math.max(1, slots.length - numPawls);
+    }
+
+    /** Return the number of characters in the alphabet. */
+    public int size() {
+        return _slots.length == 0 ? 0 : _slots[0].size();
+    }
+
+    /** Return the number of slots. */
+    public int slots() {
+        return _slots.length;
+    }
+
+    /** Return the first slot with a pawl. */
+    public int firstPawl() {
+        return _first;
+    }
+
+    /** Return the index to which the rotor in SLOT, at setting 0, maps
+     *  index X on the way in towards the reflector. */
+    public int forward(int slot, int x) {
+        return _slots[slot].permutation().permute(x);
+    }
+
+    /** Return the index to which the rotor in SLOT, at setting 0, maps
+     *  index X on the way back from the reflector. */
+    public int backward(int slot, int x) {
+        return _slots[slot].permutation().invert(x);
+    }
+
+    /** Return true iff the rotor in SLOT can rotate. */
+    public boolean rotates(int slot) {
+        return _slots[slot].rotates();
+    }
+
+    /** Return true iff the rotor in SLOT has any notches. */
+    public boolean hasNotches(int slot) {
+        return !_slots[slot].notches().isEmpty();
+    }
+
+    /** Return true iff the rotor in SLOT has a notch at SETTING. */
+    public boolean notch(int slot, int setting) {
+        Rotor rotor = _slots[slot];
+        return rotor.notches().indexOf(rotor.alphabet().toChar(setting))
+            >= 0;
+    }
+
+    /** Rotors, by slot. */
+    private final Rotor[] _slots;
+    /** First slot with a pawl. */
+    private final int _first;
+
+}
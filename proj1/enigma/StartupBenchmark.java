@@ -0,0 +1,139 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Measures the wall time of processing one short message three ways:
+ *  in a fresh JVM with default options ("cold"), in a fresh JVM started
+ *  as enigma-fast.sh starts it, with the class-data-sharing archive
+ *  ("cold, fast"), and repeatedly inside one JVM that has already
+ *  warmed up ("warm"), which is the floor that faster startup can
+ *  approach.
+ *  @author Allison Wang
+ */
+public final class StartupBenchmark {
+
+    /** Run the benchmark with ARGS = JAR ARCHIVE CONFIG INPUT [RUNS],
+     *  where JAR contains the enigma classes, ARCHIVE is the
+     *  class-data-sharing archive made from it, CONFIG and INPUT are
+     *  arguments for Main, and RUNS (default 10) is the number of
+     *  measured runs of each kind.  Median times are printed. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 4 || args.length > 5) {
+                throw error("usage: StartupBenchmark JAR ARCHIVE CONFIG "
+                            + "INPUT [RUNS]");
+            }
+            int runs = args.length > 4 ? Integer.parseInt(args[4]) : RUNS;
+            new StartupBenchmark(args[0], args[1], args[2], args[3])
+                .run(runs);
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A benchmark of Main run from JAR, using the archive ARCHIVE, on
+     *  configuration CONFIG and messages INPUT. */
+    private StartupBenchmark(String jar, String archive, String config,
+                             String input) {
+        _jar = jar;
+        _archive = archive;
+        _config = config;
+        _input = input;
+        _java = System.getProperty("java.home") + File.separator + "bin"
+            + File.separator + "java";
+        try {
+            _output = File.createTempFile("enigma", ".out");
+            _output.deleteOnExit();
+        } catch (IOException excp) {
+            throw error("could not create temporary file");
+        }
+    }
+
+    /** Measure and report RUNS runs of each kind. */
+    private void run(int runs) {
+        if (!new File(_archive).exists()) {
+            throw error("%s not found (run 'make cds' first)", _archive);
+        }
+        ArrayList<String> plain = new ArrayList<>(Arrays.asList(
+                _java, "-cp", _jar, "enigma.Main"));
+        ArrayList<String> fast = new ArrayList<>();
+        fast.add(_java);
+        fast.add("-XX:SharedArchiveFile=" + _archive);
+        fast.addAll(Arrays.asList(FAST_OPTIONS));
+        fast.addAll(Arrays.asList("-cp", _jar, "enigma.Main"));
+        for (List<String> command : Arrays.asList(plain, fast)) {
+            command.addAll(Arrays.asList(_config, _input, _output.getPath()));
+        }
+
+        report("cold", time(plain, runs));
+        report("cold, fast", time(fast, runs));
+
+        String[] args = {_config, _input, _output.getPath()};
+        for (int i = 0; i < WARM_UP; i += 1) {
+            Main.main(args);
+        }
+        long[] warm = new long[runs];
+        for (int i = 0; i < runs; i += 1) {
+            long start = System.nanoTime();
+            Main.main(args);
+            warm[i] = System.nanoTime() - start;
+        }
+        report("warm", warm);
+    }
+
+    /** Return the wall times in nanoseconds of RUNS executions of
+     *  COMMAND, after one unmeasured execution. */
+    private long[] time(List<String> command, int runs) {
+        long[] times = new long[runs];
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            for (int i = -1; i < runs; i += 1) {
+                long start = System.nanoTime();
+                int status = builder.start().waitFor();
+                if (status != 0) {
+                    throw error("%s exited with status %d",
+                                String.join(" ", command), status);
+                }
+                if (i >= 0) {
+                    times[i] = System.nanoTime() - start;
+                }
+            }
+        } catch (IOException | InterruptedException excp) {
+            throw error("could not run %s", command.get(0));
+        }
+        return times;
+    }
+
+    /** Print the median of TIMES (in nanoseconds) labeled LABEL. */
+    private static void report(String label, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-12s %8.2f ms%n", label + ":",
+                          sorted[sorted.length / 2] / 1e6);
+    }
+
+    /** JVM options used by enigma-fast.sh besides the archive. */
+    private static final String[] FAST_OPTIONS = {
+        "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xshare:auto"
+    };
+    /** Default number of measured runs. */
+    private static final int RUNS = 10;
+    /** Number of unmeasured in-process runs before measuring. */
+    private static final int WARM_UP = 50;
+
+    /** Jar file, archive, configuration and input files. */
+    private final String _jar, _archive, _config, _input;
+    /** The java launcher of this JVM. */
+    private final String _java;
+    /** Scratch output file. */
+    private final File _output;
+
+}
@@ -0,0 +1,134 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** Advances the rotors of a machine before each character.  The rotors
+ *  in the last NUMPAWLS slots have pawls.  The rightmost rotor always
+ *  advances; a rotor at one of its notches lets the pawl on its left
+ *  engage, which advances both it and its left neighbor, if that
+ *  neighbor has a pawl ("double stepping").  All rotors move at once,
+ *  according to where they stood before the step.
+ *
+ *  Rather than asking every rotor whether it is at a notch on every
+ *  step, I keep the set of slots that are at a notch and update it only
+ *  for the rotors that move.  Since a rotor is at a notch for only a few
+ *  of its settings, that set is almost always empty or tiny, and a step
+ *  costs amortized O(1) however many rotors the machine has.
+ *  @author Allison Wang
+ */
+class Stepper {
+
+    /** A stepper for the rotors SLOTS (slot 0 holding the reflector), the
+     *  last NUMPAWLS of which have pawls. */
+    Stepper(Rotor[] slots, int numPawls) {
+        _slots = slots;
+        _first = Math.max(1, slots.length - numPawls);
+        _notched = new long[(slots.length + 63) >>> 6];
+        _moved = new int[2 * slots.length];
+        sync();
+    }
+
+    /** Recompute which slots are at a notch, after rotors have been set
+     *  other than by step(). */
+    void sync() {
+        Arrays.fill(_notched, 0);
+        _count = 0;
+        for (int i = _first; i < _slots.length; i += 1) {
+            if (_slots[i].atNotch()) {
+                _notched[i >>> 6] |= 1L << i;
+                _count += 1;
+            }
+        }
+    }
+
+    /** Record each step in TRACE from now on, or stop recording if
+     *  TRACE is null. */
+    void trace(TraceWriter trace) {
+        _trace = trace;
+    }
+
+    /** Advance the rotors as for one keypress. */
+    void step() {
+        int last = _slots.length - 1;
+        if (last < _first) {
+            if (_trace != null) {
+                _trace.step(_moved, 0);
+            }
+            return;
+        }
+        if (_count == 0) {
+            advance(last);
+            if (_trace != null) {
+                _moved[0] = last;
+                record(1);
+            }
+            return;
+        }
+        int n = 0;
+        _moved[n++] = last;
+        for (int w = _notched.length - 1; w >= 0; w -= 1) {
+            long bits = _notched[w];
+            while (bits != 0) {
+                int bit = 63 - Long.numberOfLeadingZeros(bits);
+                bits &= ~(1L << bit);
+                int j = (w << 6) + bit;
+                if (j > _first) {
+                    if (_moved[n - 1] != j) {
+                        _moved[n++] = j;
+                    }
+                    _moved[n++] = j - 1;
+                }
+            }
+        }
+        for (int i = 0; i < n; i += 1) {
+            advance(_moved[i]);
+        }
+        if (_trace != null) {
+            record(n);
+        }
+    }
+
+    /** Record in _trace a step that advanced the slots _moved[0 .. N-1],
+     *  the first of which is the last slot. */
+    private void record(int n) {
+        int last = _slots.length - 1;
+        int k = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (_slots[_moved[i]].rotates()) {
+                _moved[k] = _moved[i];
+                k += 1;
+            }
+        }
+        if (k == 1 && _moved[0] == last) {
+            _trace.stepLast();
+        } else {
+            _trace.step(_moved, k);
+        }
+    }
+
+    /** Advance the rotor in SLOT and update whether it is at a notch. */
+    private void advance(int slot) {
+        Rotor rotor = _slots[slot];
+        boolean was = (_notched[slot >>> 6] & (1L << slot)) != 0;
+        rotor.advance();
+        boolean is = rotor.atNotch();
+        if (was != is) {
+            _notched[slot >>> 6] ^= 1L << slot;
+            _count += is ? 1 : -1;
+        }
+    }
+
+    /** Rotors in each slot. */
+    private final Rotor[] _slots;
+    /** First slot with a pawl. */
+    private final int _first;
+    /** Bit I is set iff the rotor in slot I >= _first is at a notch. */
+    private final long[] _notched;
+    /** Number of bits set in _notched. */
+    private int _count;
+    /** Slots moving on the current step. */
+    private final int[] _moved;
+    /** Records steps, or null. */
+    private TraceWriter _trace;
+
+}
@@ -0,0 +1,138 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The engine whose kernels are plain Java loops over tables of each
+ *  rotor's wiring, built once per rotor order.  Each table is doubled,
+ *  as in KernelCompiler, so that a rotor at setting S maps X to
+ *  TABLE[X + S] - S, wrapped into the alphabet, with no modular
+ *  arithmetic.  It supports every configuration, and does without the
+ *  cost of generating and loading classes, so it can beat the compiled
+ *  engine on short runs or on machines with very many rotors.
+ *  @author Allison Wang
+ */
+public final class TableEngine implements Engine {
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(int alphabetSize, int numRotors) {
+        return true;
+    }
+
+    @Override
+    public Kernel kernel(SlotTables slots, String wiring) {
+        if (slots.slots() == 0) {
+            return null;
+        }
+        synchronized (KERNELS) {
+            Kernel kernel = KERNELS.get(wiring);
+            if (kernel == null) {
+                kernel = new TableKernel(slots);
+                KERNELS.put(wiring, kernel);
+            }
+            return kernel;
+        }
+    }
+
+    @Override
+    public Kernel cachedKernel(String wiring) {
+        synchronized (KERNELS) {
+            return KERNELS.get(wiring);
+        }
+    }
+
+    /** A kernel for one set of rotors in their slots. */
+    private static class TableKernel implements Kernel {
+
+        /** A kernel for the rotors in SLOTS. */
+        TableKernel(SlotTables slots) {
+            _size = slots.size();
+            _last = slots.slots() - 1;
+            _first = slots.firstPawl();
+            _forward = new int[slots.slots()][];
+            _backward = new int[slots.slots()][];
+            _notches = new boolean[slots.slots()][];
+            int moving = 0;
+            int[] rotating = new int[slots.slots()];
+            for (int i = 0; i <= _last; i += 1) {
+                _forward[i] = table(slots, i, false);
+                _backward[i] = i == 0 ? null : table(slots, i, true);
+                if (i >= _first && slots.rotates(i)) {
+                    rotating[moving] = i;
+                    moving += 1;
+                    if (slots.hasNotches(i)) {
+                        _notches[i] = new boolean[_size];
+                        for (int s = 0; s < _size; s += 1) {
+                            _notches[i][s] = slots.notch(i, s);
+                        }
+                    }
+                }
+            }
+            _rotating = Arrays.copyOf(rotating, moving);
+        }
+
+        @Override
+        public int convert(int c, int[] positions) {
+            for (int i : _rotating) {
+                int setting = positions[i];
+                if (i == _last
+                    || _notches[i + 1] != null
+                       && _notches[i + 1][positions[i + 1]]
+                    || i > _first && _notches[i] != null
+                       && _notches[i][setting]) {
+                    positions[i] = setting + 1 == _size ? 0 : setting + 1;
+                }
+            }
+            for (int i = _last; i >= 0; i -= 1) {
+                c = through(_forward[i], c, positions[i]);
+            }
+            for (int i = 1; i <= _last; i += 1) {
+                c = through(_backward[i], c, positions[i]);
+            }
+            return c;
+        }
+
+        /** Return the image of X under the doubled TABLE of a rotor at
+         *  SETTING. */
+        private int through(int[] table, int x, int setting) {
+            int y = table[x + setting] - setting;
+            return y < 0 ? y + _size : y;
+        }
+
+        /** Return the doubled table of the rotor in SLOT of SLOTS, or of
+         *  its inverse if INVERSE. */
+        private int[] table(SlotTables slots, int slot, boolean inverse) {
+            int[] table = new int[2 * _size];
+            for (int x = 0; x < _size; x += 1) {
+                int y = inverse ? slots.backward(slot, x)
+                    : slots.forward(slot, x);
+                table[x] = table[x + _size] = y;
+            }
+            return table;
+        }
+
+        /** Alphabet size. */
+        private final int _size;
+        /** Last slot, and first slot with a pawl. */
+        private final int _first, _last;
+        /** Doubled forward and inverse tables, by slot. */
+        private final int[][] _forward, _backward;
+        /** For each rotating slot with notches, whether each setting is
+         *  at a notch; otherwise null. */
+        private final boolean[][] _notches;
+        /** Slots with pawls holding rotating rotors, in increasing
+         *  order. */
+        private final int[] _rotating;
+    }
+
+    /** My name. */
+    static final String NAME = "table";
+    /** Kernels, by Machine.wiring(). */
+    private static final LruCache<String, Kernel> KERNELS =
+        new LruCache<>(256);
+
+}
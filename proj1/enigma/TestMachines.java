@@ -0,0 +1,62 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static enigma.TestUtils.*;
+
+/** Machines with the naval rotors of TestUtils.NAVALA, shared by the
+ *  tests.
+ *  @author Allison Wang
+ */
+class TestMachines {
+
+    /** Names of the naval moving rotors. */
+    static final String[] MOVING = {"I", "II", "III", "IV", "V"};
+
+    /** The notch of each naval moving rotor, in the order of MOVING. */
+    static final String[] NOTCHES = {"Q", "E", "V", "J", "Z"};
+
+    /** A message with blanks. */
+    static final String MSG =
+        "From his shoulder Hiawatha Took the camera of rosewood";
+
+    /** The settings used in the examples: rotors B Beta III IV I at AXLE,
+     *  with plugboard (HQ) (EX) (IP) (TR) (BY). */
+    static final MachineSettings AXLE = new MachineSettings(
+        new String[] {"B", "Beta", "III", "IV", "I"}, "AXLE",
+        "(HQ) (EX) (IP) (TR) (BY)");
+
+    /** Return a machine with five slots and three pawls whose rotors are
+     *  reflector B, fixed rotor Beta and the naval moving rotors, none of
+     *  them inserted. */
+    static Machine naval() {
+        return naval(NAVALA, NOTCHES);
+    }
+
+    /** Return a machine like naval(), except that each rotor is wired as
+     *  WIRINGS gives for its name, and that moving rotor MOVING[K] has
+     *  notches NOTCHES[K]. */
+    static Machine naval(Map<String, String> wirings, String[] notches) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(wirings.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(wirings.get("Beta"),
+                                                  UPPER)));
+        for (int i = 0; i < MOVING.length; i += 1) {
+            rotors.add(new MovingRotor(MOVING[i],
+                    new Permutation(wirings.get(MOVING[i]), UPPER),
+                    notches[i]));
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /** Return naval() with the settings AXLE applied. */
+    static Machine axle() {
+        Machine m = naval();
+        AXLE.apply(m);
+        return m;
+    }
+
+}
@@ -0,0 +1,120 @@
+package enigma;
+
+import java.util.NoSuchElementException;
+
+/** Splits text into words separated by whitespace, with one word of
+ *  look-ahead.  This covers the uses Main made of Scanner without
+ *  loading Scanner or the regular-expression classes at startup.
+ *  @author Allison Wang
+ */
+class Tokenizer {
+
+    /** A tokenizer for the words of TEXT. */
+    Tokenizer(CharSequence text) {
+        _text = text;
+        _pos = 0;
+        advance();
+    }
+
+    /** Return true iff there is another word. */
+    boolean hasNext() {
+        return _next != null;
+    }
+
+    /** Return the next word without consuming it, or null if there is
+     *  none. */
+    String peek() {
+        return _next;
+    }
+
+    /** Consume and return the next word.  Throws NoSuchElementException
+     *  if there is none. */
+    String next() {
+        if (_next == null) {
+            throw new NoSuchElementException();
+        }
+        String word = _next;
+        advance();
+        return word;
+    }
+
+    /** Return true iff WORD is a decimal integer in the range of int. */
+    static boolean isInt(String word) {
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        int k = word.charAt(0) == '-' || word.charAt(0) == '+' ? 1 : 0;
+        if (k == word.length() || word.length() - k > 10) {
+            return false;
+        }
+        for (int i = k; i < word.length(); i += 1) {
+            if (word.charAt(i) < '0' || word.charAt(i) > '9') {
+                return false;
+            }
+        }
+        long value = Long.parseLong(word);
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /** Return true iff WORD consists of exactly LENGTH word characters
+     *  (letters, digits, and underscores), like the regular expression
+     *  \w{LENGTH}. */
+    static boolean isWord(String word, int length) {
+        if (word == null || word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i += 1) {
+            if (!isWordChar(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff WORD is a parenthesized cycle such as "(ABC)".  If
+     *  SIMPLE, the contents must be word characters, as for the regular
+     *  expression [(]\w+[)]; otherwise any non-empty contents are
+     *  accepted, as for [(].+[)]. */
+    static boolean isCycle(String word, boolean simple) {
+        if (word == null || word.length() < 3 || word.charAt(0) != '('
+            || word.charAt(word.length() - 1) != ')') {
+            return false;
+        }
+        if (simple) {
+            return isWord(word.substring(1, word.length() - 1),
+                          word.length() - 2);
+        }
+        return true;
+    }
+
+    /** Return true iff CH matches the regular expression \w. */
+    private static boolean isWordChar(char ch) {
+        return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'
+            || ch >= '0' && ch <= '9' || ch == '_';
+    }
+
+    /** Find the word after the current position and make it _next. */
+    private void advance() {
+        int n = _text.length();
+        while (_pos < n && Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        if (_pos == n) {
+            _next = null;
+            return;
+        }
+        int start = _pos;
+        while (_pos < n && !Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        _next = _text.subSequence(start, _pos).toString();
+    }
+
+    /** Text being split. */
+    private final CharSequence _text;
+    /** Position in _text just past _next. */
+    private int _pos;
+    /** The next word, or null. */
+    private String _next;
+
+}
@@ -0,0 +1,249 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Reads a trace written by a TraceWriter and reconstructs the settings
+ *  under which any character was converted, from the trace alone.  On
+ *  opening a trace, I index its key records; to find the settings at a
+ *  character, I start from the last key record at or before it and
+ *  apply the recorded moves up to it, which touches at most
+ *  TraceWriter.CHECKPOINT characters' worth of records.
+ *  @author Allison Wang
+ */
+public final class TraceReplay {
+
+    /** With ARGS = TRACE OFFSET..., print for each OFFSET the settings
+     *  line describing the rotors and plugboard under which character
+     *  OFFSET (counting from 0) was converted. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 2) {
+                throw error("usage: TraceReplay TRACE OFFSET...");
+            }
+            TraceReplay replay = new TraceReplay(Paths.get(args[0]));
+            for (int i = 1; i < args.length; i += 1) {
+                long offset;
+                try {
+                    offset = Long.parseLong(args[i]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad offset: %s", args[i]);
+                }
+                System.out.printf("%d: %s%n", offset, replay.settings(offset));
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A replay of the trace in FILE. */
+    TraceReplay(Path file) {
+        try {
+            _data = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException excp) {
+            throw error("could not open %s", file);
+        }
+        _keyOffsets = new long[16];
+        _keyPositions = new int[16];
+        _plugboardOffsets = new ArrayList<>();
+        _plugboards = new ArrayList<>();
+        try {
+            if (_data.getInt() != TraceWriter.MAGIC) {
+                throw error("%s is not a trace", file);
+            }
+            _alphabet = new char[(int) readVar()];
+            for (int i = 0; i < _alphabet.length; i += 1) {
+                _alphabet[i] = _data.getChar();
+            }
+            index();
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("%s is corrupt", file);
+        }
+    }
+
+    /** Return the number of characters recorded. */
+    long length() {
+        return _length;
+    }
+
+    /** Return the settings under which character OFFSET was converted:
+     *  the rotors, their settings after the step that preceded it, and
+     *  the plugboard. */
+    MachineSettings settings(long offset) {
+        if (offset < 0 || offset >= _length) {
+            throw error("offset %d is outside the trace of %d characters",
+                        offset, _length);
+        }
+        int k = upperBound(_keyOffsets, _keys, offset) - 1;
+        if (k < 0) {
+            throw error("no rotors were set before offset %d", offset);
+        }
+        _data.position(_keyPositions[k]);
+        String[] names = null;
+        int[] settings = null;
+        long at = -1;
+        while (at <= offset) {
+            int tag = _data.get();
+            if (tag == TraceWriter.KEY) {
+                at = readVar();
+                names = new String[(int) readVar()];
+                settings = new int[names.length];
+                for (int i = 0; i < names.length; i += 1) {
+                    names[i] = readUTF();
+                    settings[i] = (int) readVar();
+                }
+            } else if (tag == TraceWriter.RUN) {
+                long n = Math.min(readVar(), offset + 1 - at);
+                int last = settings.length - 1;
+                settings[last] =
+                    (int) ((settings[last] + n) % _alphabet.length);
+                at += n;
+            } else if (tag == TraceWriter.STEP) {
+                int n = (int) readVar();
+                for (int i = 0; i < n; i += 1) {
+                    int slot = (int) readVar();
+                    settings[slot] = (settings[slot] + 1) % _alphabet.length;
+                }
+                at += 1;
+            } else if (tag == TraceWriter.PLUGBOARD) {
+                readVar();
+                readUTF();
+            } else {
+                throw error("corrupt trace");
+            }
+        }
+        char[] positions = new char[settings.length - 1];
+        for (int i = 1; i < settings.length; i += 1) {
+            positions[i - 1] = _alphabet[settings[i]];
+        }
+        int p = upperBound(_plugboardOffsets, offset) - 1;
+        return new MachineSettings(names, new String(positions),
+                                   p < 0 ? "" : _plugboards.get(p));
+    }
+
+    /** Read the records following the header, indexing key records and
+     *  plugboard records and counting characters. */
+    private void index() {
+        long at = 0;
+        while (_data.hasRemaining()) {
+            int start = _data.position();
+            int tag = _data.get();
+            if (tag == TraceWriter.KEY) {
+                if (_keys == _keyOffsets.length) {
+                    _keyOffsets = Arrays.copyOf(_keyOffsets, 2 * _keys);
+                    _keyPositions = Arrays.copyOf(_keyPositions, 2 * _keys);
+                }
+                _keyOffsets[_keys] = readVar();
+                _keyPositions[_keys] = start;
+                _keys += 1;
+                long slots = readVar();
+                for (long i = 0; i < slots; i += 1) {
+                    readUTF();
+                    readVar();
+                }
+            } else if (tag == TraceWriter.RUN) {
+                at += readVar();
+            } else if (tag == TraceWriter.STEP) {
+                long n = readVar();
+                for (long i = 0; i < n; i += 1) {
+                    readVar();
+                }
+                at += 1;
+            } else if (tag == TraceWriter.PLUGBOARD) {
+                _plugboardOffsets.add(readVar());
+                _plugboards.add(readUTF());
+            } else {
+                throw error("corrupt trace");
+            }
+        }
+        _length = at;
+    }
+
+    /** Return the number of elements of the nondecreasing array
+     *  VALUES[0 .. N-1] that are at most X. */
+    private static int upperBound(long[] values, int n, long x) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the number of elements of the nondecreasing list VALUES
+     *  that are at most X. */
+    private static int upperBound(ArrayList<Long> values, long x) {
+        int lo = 0, hi = values.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values.get(mid) <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Read a variable-length unsigned integer, as written by
+     *  TraceWriter. */
+    private long readVar() {
+        long x = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = _data.get();
+            x |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return x;
+            }
+        }
+        throw error("corrupt trace");
+    }
+
+    /** Read a string in modified UTF-8, as written by writeUTF. */
+    private String readUTF() {
+        int start = _data.position();
+        int length = 2 + (_data.getShort() & 0xffff);
+        _data.position(start + length);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(
+                _data.array(), start, length)).readUTF();
+        } catch (IOException excp) {
+            throw error("corrupt trace");
+        }
+    }
+
+    /** The trace. */
+    private final ByteBuffer _data;
+    /** Characters of the traced machine's alphabet, in order. */
+    private char[] _alphabet;
+    /** Offsets of the key records. */
+    private long[] _keyOffsets;
+    /** Positions of the key records in _data. */
+    private int[] _keyPositions;
+    /** Number of key records. */
+    private int _keys;
+    /** Offsets of the plugboard records. */
+    private final ArrayList<Long> _plugboardOffsets;
+    /** Cycles of each plugboard record. */
+    private final ArrayList<String> _plugboards;
+    /** Number of characters recorded. */
+    private long _length;
+
+}
@@ -0,0 +1,136 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestMachines.*;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the TraceWriter and TraceReplay
+ *  classes.
+ *  @author Allison Wang
+ */
+public class TraceReplayTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the naval machine with rotors I and II notched on many
+     *  letters, so that the middle and left rotors move often. */
+    private Machine machine() {
+        return naval(NAVALA, new String[] {"AEIMQ", "BFJ", "V", "J", "Z"});
+    }
+
+    /** Return the settings line for M's rotors NAMES, current positions
+     *  and plugboard cycles PLUGBOARD. */
+    private String line(Machine m, String[] names, String plugboard) {
+        int[] positions = new int[names.length - 1];
+        m.getPositions(positions);
+        char[] letters = new char[positions.length];
+        for (int i = 0; i < positions.length; i += 1) {
+            letters[i] = UPPER.toChar(positions[i]);
+        }
+        return new MachineSettings(names, new String(letters), plugboard)
+            .toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkReplayMatchesConversion() throws IOException {
+        File file = File.createTempFile("enigma", ".trace");
+        file.deleteOnExit();
+        Machine m = machine();
+        String[] first = {"B", "Beta", "I", "II", "III"};
+        String[] second = {"B", "Beta", "III", "I", "II"};
+        int n = 3 * TraceWriter.CHECKPOINT;
+        String[] expected = new String[n];
+        Random random = new Random(3);
+        try (TraceWriter trace = new TraceWriter(new FileOutputStream(file),
+                                                 UPPER)) {
+            m.trace(trace);
+            m.insertRotors(first);
+            m.setRotors("AQEV");
+            for (int i = 0; i < n; i += 1) {
+                if (i == n / 2) {
+                    m.insertRotors(second);
+                    m.setRotors("ZZZZ");
+                    m.setPlugboard(new Permutation("(AB) (CD)", UPPER));
+                }
+                m.convert(random.nextInt(26));
+                expected[i] = i < n / 2 ? line(m, first, "")
+                    : line(m, second, "(AB) (CD)");
+            }
+            assertEquals(n, trace.offset());
+        }
+        assertTrue(file.length() < n);
+
+        TraceReplay replay = new TraceReplay(file.toPath());
+        assertEquals(n, replay.length());
+        for (int i = 0; i < n; i += 997) {
+            assertEquals(expected[i], replay.settings(i).toString());
+        }
+        for (int i : new int[] {0, n / 2 - 1, n / 2, n - 1,
+                                TraceWriter.CHECKPOINT - 1,
+                                TraceWriter.CHECKPOINT}) {
+            assertEquals(expected[i], replay.settings(i).toString());
+        }
+    }
+
+    @Test
+    public void checkBulkConversionTraced() throws IOException {
+        File file = File.createTempFile("enigma", ".trace");
+        file.deleteOnExit();
+        String[] names = {"B", "Beta", "I", "II", "III"};
+        Machine traced = machine(), plain = machine();
+        traced.insertRotors(names);
+        traced.setRotors("AQEV");
+        plain.insertRotors(names);
+        plain.setRotors("AQEV");
+        int n = 2 * TraceWriter.CHECKPOINT;
+        char[] text = new char[n];
+        Arrays.fill(text, 'A');
+        try (TraceWriter trace = new TraceWriter(new FileOutputStream(file),
+                                                 UPPER)) {
+            traced.trace(trace);
+            for (int i = 0; i < n; i += 5000) {
+                traced.convert(text, i, Math.min(n, i + 5000));
+            }
+        }
+        TraceReplay replay = new TraceReplay(file.toPath());
+        assertEquals(n, replay.length());
+        for (int i = 0; i < n; i += 1) {
+            plain.convert(0);
+            if (i % 1009 == 0 || i == n - 1) {
+                assertEquals(line(plain, names, ""),
+                             replay.settings(i).toString());
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkOffsetOutOfRange() throws IOException {
+        File file = File.createTempFile("enigma", ".trace");
+        file.deleteOnExit();
+        Machine m = machine();
+        try (TraceWriter trace = new TraceWriter(new FileOutputStream(file),
+                                                 UPPER)) {
+            m.trace(trace);
+            m.insertRotors(new String[] {"B", "Beta", "I", "II", "III"});
+            m.convert("HELLO");
+        }
+        new TraceReplay(file.toPath()).settings(5);
+    }
+
+}
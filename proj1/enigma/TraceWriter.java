@@ -0,0 +1,186 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static enigma.EnigmaException.*;
+
+/** Records the rotor settings under which a machine converts each
+ *  character, as a compact binary log that TraceReplay reads back.
+ *  Since stepping is deterministic, I record only how settings change:
+ *  a key record with every slot's rotor and setting whenever the rotors
+ *  are inserted or set, and for each character, which rotors moved.  On
+ *  almost every character only the rightmost rotor moves, and a run of
+ *  such characters is one record holding its length, so a trace costs
+ *  a few bytes per notch passed rather than per character.  I follow
+ *  the settings myself as moves are recorded, and write a key record
+ *  every CHECKPOINT characters, so that replay can reach any character
+ *  quickly.
+ *
+ *  Layout: the magic number, the alphabet, then records, each a tag
+ *  byte followed by its fields, with counts and settings written as
+ *  variable-length unsigned integers (seven bits per byte):
+ *      KEY offset slots (name setting)...
+ *      RUN count
+ *      STEP count slot...
+ *      PLUGBOARD offset cycles
+ *  where offsets count the characters converted before the record and
+ *  names and cycles are in modified UTF-8.
+ *  @author Allison Wang
+ */
+class TraceWriter implements AutoCloseable {
+
+    /** A trace of a machine with alphabet ALPHABET, written to OUT. */
+    TraceWriter(OutputStream out, Alphabet alphabet) {
+        _out = new DataOutputStream(new BufferedOutputStream(out));
+        _size = alphabet.size();
+        try {
+            _out.writeInt(MAGIC);
+            writeVar(alphabet.size());
+            for (int i = 0; i < alphabet.size(); i += 1) {
+                _out.writeChar(alphabet.toChar(i));
+            }
+        } catch (IOException excp) {
+            throw error("could not write trace");
+        }
+    }
+
+    /** Record that the rotors in SLOTS (slot 0 holding the reflector)
+     *  are now in place, at their current settings. */
+    void key(Rotor[] slots) {
+        _names = new String[slots.length];
+        _settings = new int[slots.length];
+        for (int i = 0; i < slots.length; i += 1) {
+            _names[i] = slots[i].name();
+            _settings[i] = slots[i].setting();
+        }
+        writeKey();
+    }
+
+    /** Record that the plugboard is now PLUGBOARD, or none if null. */
+    void plugboard(Permutation plugboard) {
+        try {
+            flushRun();
+            _out.writeByte(PLUGBOARD);
+            writeVar(_offset);
+            _out.writeUTF(plugboard == null ? "" : plugboard.cycles());
+        } catch (IOException excp) {
+            throw error("could not write trace");
+        }
+    }
+
+    /** Record a character for which only the rotor in the last slot
+     *  moved. */
+    void stepLast() {
+        advance(_settings.length - 1);
+        _run += 1;
+        _offset += 1;
+        if (_offset - _lastKey >= CHECKPOINT) {
+            writeKey();
+        }
+    }
+
+    /** Record a character for which the rotors in slots SLOTS[0 .. N-1]
+     *  moved, and no others. */
+    void step(int[] slots, int n) {
+        try {
+            flushRun();
+            _out.writeByte(STEP);
+            writeVar(n);
+            for (int i = 0; i < n; i += 1) {
+                writeVar(slots[i]);
+                advance(slots[i]);
+            }
+        } catch (IOException excp) {
+            throw error("could not write trace");
+        }
+        _offset += 1;
+        if (_offset - _lastKey >= CHECKPOINT) {
+            writeKey();
+        }
+    }
+
+    /** Return the number of characters recorded. */
+    long offset() {
+        return _offset;
+    }
+
+    /** Finish and close the trace. */
+    @Override
+    public void close() {
+        try {
+            flushRun();
+            _out.close();
+        } catch (IOException excp) {
+            throw error("could not write trace");
+        }
+    }
+
+    /** Advance my copy of the setting of SLOT. */
+    private void advance(int slot) {
+        int setting = _settings[slot] + 1;
+        _settings[slot] = setting == _size ? 0 : setting;
+    }
+
+    /** Write a key record for the current rotors and settings. */
+    private void writeKey() {
+        try {
+            flushRun();
+            _out.writeByte(KEY);
+            writeVar(_offset);
+            writeVar(_names.length);
+            for (int i = 0; i < _names.length; i += 1) {
+                _out.writeUTF(_names[i]);
+                writeVar(_settings[i]);
+            }
+        } catch (IOException excp) {
+            throw error("could not write trace");
+        }
+        _lastKey = _offset;
+    }
+
+    /** Write the pending run, if any. */
+    private void flushRun() throws IOException {
+        if (_run > 0) {
+            _out.writeByte(RUN);
+            writeVar(_run);
+            _run = 0;
+        }
+    }
+
+    /** Write X >= 0 in seven-bit groups, least significant first, with
+     *  the high bit set on all but the last. */
+    private void writeVar(long x) throws IOException {
+        while ((x & ~0x7fL) != 0) {
+            _out.writeByte((int) (x & 0x7f) | 0x80);
+            x >>>= 7;
+        }
+        _out.writeByte((int) x);
+    }
+
+    /** First word of a trace. */
+    static final int MAGIC = 0x45545243;
+    /** Record tags. */
+    static final int KEY = 1, RUN = 2, STEP = 3, PLUGBOARD = 4;
+    /** Most characters between key records. */
+    static final int CHECKPOINT = 1 << 16;
+
+    /** Destination. */
+    private final DataOutputStream _out;
+    /** Alphabet size. */
+    private final int _size;
+    /** Names of the rotors in place, by slot. */
+    private String[] _names;
+    /** Current settings of the rotors in place, by slot. */
+    private int[] _settings;
+    /** Characters recorded. */
+    private long _offset;
+    /** Value of _offset at the last key record. */
+    private long _lastKey;
+    /** Length of the pending run of characters moving only the last
+     *  rotor. */
+    private long _run;
+
+}
@@ -0,0 +1,145 @@
+package enigma;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A process-wide pool of rotor permutations, in which equal
+ *  permutations are one object.  Configurations often describe the
+ *  same historical wiring under different rotor names, or the same
+ *  rotor in every file of a batch; interning them means that each
+ *  wiring's tables are compiled and held once, that kernels and cached
+ *  results keyed by Machine.wiring() are shared among them (an interned
+ *  permutation keeps the cycles it was first given), and that fewer
+ *  tables compete for the processor's caches.  Two permutations are
+ *  equal when their alphabets have the same characters in the same
+ *  order and they map every character alike, however their cycles were
+ *  written.  Interning compares their cycles, and compiles nothing,
+ *  so that rotors never placed in a machine still cost no tables.  The
+ *  pool refers to its permutations weakly, so that those
+ *  of configurations no longer in use can be collected.
+ *  @author Allison Wang
+ */
+final class WiringPool {
+
+    /** Return the permutation in the pool equal to PERM, adding PERM if
+     *  there is none. */
+    static Permutation intern(Permutation perm) {
+        String key = key(perm);
+        synchronized (POOL) {
+            purge();
+            Entry entry = POOL.get(key);
+            Permutation pooled = entry == null ? null : entry.get();
+            if (pooled != null) {
+                return pooled;
+            }
+            POOL.put(key, new Entry(key, perm));
+            return perm;
+        }
+    }
+
+    /** Return the number of permutations in the pool. */
+    static int size() {
+        synchronized (POOL) {
+            purge();
+            return POOL.size();
+        }
+    }
+
+    /** Return the canonical form of PERM: its alphabet's runs, then its
+     *  cycles of two or more character indices, each starting at its
+     *  least index, in increasing order of those.  It is worked out from
+     *  the cycles PERM was given, so PERM is not compiled.  Cycles that
+     *  name a character more than once describe no permutation, and
+     *  are rejected. */
+    private static String key(Permutation perm) {
+        Alphabet alphabet = perm.alphabet();
+        String cycles = perm.cycles();
+        char[] cycle = new char[cycles.length()];
+        char[] moved = new char[cycles.length()];
+        char[] named = new char[cycles.length()];
+        int[] from = new int[cycles.length() / 2 + 1];
+        long[] order = new long[from.length];
+        int n = 0, least = 0, total = 0, count = 0, all = 0;
+        for (int i = 0; i < cycles.length(); i += 1) {
+            char ch = cycles.charAt(i);
+            if (ch == '(') {
+                n = 0;
+            } else if (ch == ')') {
+                if (n > 1) {
+                    from[count] = total;
+                    order[count] = (long) cycle[least] << 32 | count;
+                    count += 1;
+                    System.arraycopy(cycle, least, moved, total, n - least);
+                    System.arraycopy(cycle, 0, moved, total + n - least,
+                                     least);
+                    total += n;
+                }
+                n = 0;
+            } else if (!Character.isWhitespace(ch)) {
+                if (!alphabet.contains(ch)) {
+                    throw error("character %c not in alphabet", ch);
+                }
+                char index = (char) alphabet.toInt(ch);
+                named[all] = index;
+                all += 1;
+                if (n == 0 || index < cycle[least]) {
+                    least = n;
+                }
+                cycle[n] = index;
+                n += 1;
+            }
+        }
+        Arrays.sort(named, 0, all);
+        for (int i = 1; i < all; i += 1) {
+            if (named[i] == named[i - 1]) {
+                throw error("character %c repeated in cycles",
+                            alphabet.toChar(named[i]));
+            }
+        }
+        from[count] = total;
+        Arrays.sort(order, 0, count);
+        String runs = alphabet.runs();
+        StringBuilder key = new StringBuilder(runs.length() + total
+                                              + 4 * count + 4);
+        key.append(runs.length()).append(':').append(runs);
+        for (int k = 0; k < count; k += 1) {
+            int c = (int) order[k];
+            int length = from[c + 1] - from[c];
+            key.append(' ').append(length).append(':')
+                .append(moved, from[c], length);
+        }
+        return key.toString();
+    }
+
+    /** Remove the entries whose permutations have been collected. */
+    private static void purge() {
+        for (Object ref = QUEUE.poll(); ref != null; ref = QUEUE.poll()) {
+            Entry entry = (Entry) ref;
+            POOL.remove(entry._key, entry);
+        }
+    }
+
+    /** A weak reference to a pooled permutation, which knows its key. */
+    private static class Entry extends WeakReference<Permutation> {
+
+        /** An entry for PERM, whose canonical form is KEY. */
+        Entry(String key, Permutation perm) {
+            super(perm, QUEUE);
+            _key = key;
+        }
+
+        /** Canonical form of the permutation. */
+        private final String _key;
+    }
+
+    /** Pooled permutations, by canonical form. */
+    private static final HashMap<String, Entry> POOL = new HashMap<>();
+    /** Entries whose permutations have been collected. */
+    private static final ReferenceQueue<Permutation> QUEUE =
+        new ReferenceQueue<>();
+
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the WiringPool class.
+ *  @author Allison Wang
+ */
+public class WiringPoolTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the name of a new configuration file whose rotors are
+     *  reflector B and moving rotors wired as naval rotors I, II and III,
+     *  named NAMES[0], NAMES[1] and NAMES[2]. */
+    private String writeConfig(String... names) throws IOException {
+        File file = File.createTempFile("pool", ".conf");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("A-Z");
+            out.println("4 3");
+            out.println("B R " + NAVALA.get("B"));
+            out.println(names[0] + " MQ " + NAVALA.get("I"));
+            out.println(names[1] + " ME " + NAVALA.get("II"));
+            out.println(names[2] + " MV " + NAVALA.get("III"));
+        }
+        return file.getPath();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkEqualMappingsShared() {
+        Permutation p = WiringPool.intern(
+            new Permutation("(ABC) (DE)", new CharacterRange('A', 'Z')));
+        Permutation q = WiringPool.intern(
+            new Permutation("(ED)(CAB)", new CharacterRange('A', 'Z')));
+        assertSame(p, q);
+        assertEquals("(ABC) (DE)", q.cycles());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedCharacterRejected() {
+        WiringPool.intern(new Permutation("(BC) (AB)", UPPER));
+    }
+
+    @Test
+    public void checkFixedPointsIgnored() {
+        Permutation p = WiringPool.intern(
+            new Permutation("(FGH) (IJ)", UPPER));
+        assertSame(p, WiringPool.intern(
+            new Permutation("(K) (JI) (HFG) ()", UPPER)));
+    }
+
+    @Test
+    public void checkInternDoesNotCompile() {
+        Permutation p = new Permutation("(LMN) (OP)", UPPER) {
+            @Override
+            int permute(int c) {
+                throw new AssertionError("compiled");
+            }
+
+            @Override
+            int invert(int c) {
+                throw new AssertionError("compiled");
+            }
+        };
+        assertSame(p, WiringPool.intern(p));
+    }
+
+    @Test
+    public void checkDifferentMappingsKept() {
+        Permutation p = WiringPool.intern(
+            new Permutation("(ABC) (DE)", UPPER));
+        assertFalse(p == WiringPool.intern(
+            new Permutation("(ACB) (DE)", UPPER)));
+        assertFalse(p == WiringPool.intern(
+            new Permutation("(ABC) (DE)", new CharacterRange('A', 'Y'))));
+    }
+
+    @Test
+    public void checkRunsDescribeCharacters() {
+        Alphabet odd = new Alphabet() {
+            @Override
+            int size() {
+                return 4;
+            }
+
+            @Override
+            boolean contains(char ch) {
+                return "ABCE".indexOf(ch) >= 0;
+            }
+
+            @Override
+            char toChar(int index) {
+                return "ABCE".charAt(index);
+            }
+
+            @Override
+            int toInt(char ch) {
+                return "ABCE".indexOf(ch);
+            }
+        };
+        assertEquals("ACEE", odd.runs());
+        assertEquals("AC", new CharacterRange('A', 'C').runs());
+    }
+
+    @Test
+    public void checkConfigsShareWirings() throws IOException {
+        Machine m1 = Main.configure(writeConfig("I", "II", "III"));
+        Machine m2 = Main.configure(writeConfig("X", "Y", "Z"));
+        assertSame(m1.allRotors().get("I").permutation(),
+                   m2.allRotors().get("X").permutation());
+        assertSame(m1.allRotors().get("B").permutation(),
+                   m2.allRotors().get("B").permutation());
+        m1.insertRotors(new String[] {"B", "I", "II", "III"});
+        m2.insertRotors(new String[] {"B", "X", "Y", "Z"});
+        assertEquals(m1.wiring(), m2.wiring());
+    }
+
+}
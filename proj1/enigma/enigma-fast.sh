@@ -0,0 +1,15 @@
+#!/bin/sh
+# Startup-optimized launcher for enigma.Main, for scripts that run one
+# short message per invocation.  Usage is the same as for enigma.Main.
+# Build enigma.jar and its class-data-sharing archive enigma.jsa first
+# with 'make cds'; without the archive, this still runs, just slower.
+# Long runs over large inputs are better served by plain 'java', since
+# -XX:TieredStopAtLevel=1 gives up the optimizing compiler.
+
+dir=$(dirname "$0")
+archive=
+if [ -f "$dir/enigma.jsa" ]; then
+    archive="-XX:SharedArchiveFile=$dir/enigma.jsa"
+fi
+exec java $archive -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Xshare:auto \
+    -cp "$dir/enigma.jar" enigma.Main "$@"